@@ -3,8 +3,10 @@ package potaufeu;
 import static potaufeu.Messages.message;
 import static potaufeu.PackagePrivate.*;
 import java.io.*;
+import java.nio.charset.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.*;
 import java.util.function.*;
 import java.util.stream.*;
@@ -22,8 +24,12 @@ public final class App {
     private boolean interactive;
 
     public App() {
+        this(asPrintWriter(System.out));
+    }
+
+    App(PrintWriter out) {
         this.results = new ResultList();
-        this.out = asPrintWriter(System.out);
+        this.out = out;
     }
 
     void find(OptionSet opts) {
@@ -34,30 +40,69 @@ public final class App {
             out.println(message("i.showCondition", VerboseMessages.patterns(opts), VerboseMessages.options(opts)));
         log.info(() -> "preparation");
         LongAdder count = new LongAdder();
-        Predicate<Path> filter = integratedFilter(opts);
-        Stream<Path> stream = createStream(opts, count).filter(filter);
-        log.info(() -> "running");
-        final long startTime = System.currentTimeMillis();
-        final long matchedCount;
+        Predicate<PathEntry> filter = integratedFilter(opts);
+        final ExecutorService io = opts.getVirtualThreads().isPresent() ? createIoExecutor(opts) : null;
+        try (Stream<PathEntry> stream = createStream(opts, count, io).filter(filter)) {
+            log.info(() -> "running");
+            final long startTime = System.currentTimeMillis();
+            final int parallelism = parallelism(opts);
+            final long matchedCount;
+            if (parallelism > 1) {
+                // the parallel stream runs on the pool which invokes its terminal operation
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    matchedCount = pool.submit(() -> process(stream, opts, io)).join();
+                } finally {
+                    pool.shutdown();
+                }
+            }
+            else
+                matchedCount = process(stream, opts, io);
+            if (verbose)
+                out.println(VerboseMessages.end(matchedCount, count.longValue(), System.currentTimeMillis() - startTime));
+        } finally {
+            if (io != null)
+                io.shutdownNow();
+        }
+        log.info(() -> methodName + " end");
+    }
+
+    private static ExecutorService createIoExecutor(OptionSet opts) {
+        final int concurrency = ioConcurrency(opts);
+        log.info(() -> String.format("I/O executor: concurrency=%d, virtual=%s", concurrency, IoExecutors.isVirtual()));
+        return IoExecutors.newExecutor(concurrency);
+    }
+
+    private static int ioConcurrency(OptionSet opts) {
+        return Math.max(1, opts.getVirtualThreads().orElse(1));
+    }
+
+    long process(Stream<PathEntry> stream, OptionSet opts, ExecutorService io) {
         if (!opts.getGrepPatterns().isEmpty())
-            matchedCount = filterPathsAndLines(stream, opts);
+            return filterPathsAndLines(stream, opts, io);
+        else if (opts.isFindsDuplicates())
+            return findDuplicates(stream, opts, io);
         else if (opts.isCollectsExtension())
-            matchedCount = collectExtensions(stream, opts);
-        else
-            matchedCount = filterPaths(stream, opts);
-        if (verbose)
-            out.println(VerboseMessages.end(matchedCount, count.longValue(), System.currentTimeMillis() - startTime));
-        log.info(() -> methodName + " end");
+            return collectExtensions(stream, opts);
+        return filterPaths(stream, opts);
+    }
+
+    static int parallelism(OptionSet opts) {
+        if (!opts.getThreads().isPresent())
+            return 1;
+        final int n = opts.getThreads().getAsInt();
+        return (n == 0) ? Runtime.getRuntime().availableProcessors() : n;
     }
 
-    long filterPaths(Stream<Path> stream, OptionSet opts) {
+    long filterPaths(Stream<PathEntry> stream, OptionSet opts) {
         final boolean createsResult = opts.isInteractive() || interactive;
         final boolean verbose = opts.isVerbose();
         final boolean verboseForStreamOp = verbose && !opts.isDisabledVerboseFileCountOfHeadOption();
         log.debug(() -> "StreamOperation.verbose=" + verboseForStreamOp);
         Sampler sampler = new Sampler(createsResult, verbose);
-        StreamOperation.of(stream).verbose(verboseForStreamOp).sorted(PathSorter.getSorter(opts.getSortKeys())).sequential()
-                .peek(sampler).head(opts.getHeadCount()).tail(opts.getTailCount()).getStream()
+        final boolean parallel = parallelism(opts) > 1;
+        StreamOperation.of(stream).verbose(verboseForStreamOp).sorted(PathSorter.getEntrySorter(opts.getSortKeys()))
+                .parallel(parallel).peek(sampler).head(opts.getHeadCount()).tail(opts.getTailCount()).getStream()
                 .forEachOrdered(TerminalOperation.with(out, opts));
         if (sampler.isResultRecorded)
             if (sampler.getResult().matchedCount() == 0)
@@ -74,45 +119,122 @@ public final class App {
         return -1L;
     }
 
-    long collectExtensions(Stream<Path> stream, OptionSet opts) {
+    long collectExtensions(Stream<PathEntry> stream, OptionSet opts) {
         LongAdder count = new LongAdder();
-        Stream<String> stExt = stream.map(StreamOperation::pathToExtension).distinct();
+        Stream<String> stExt = stream.map(x -> StreamOperation.pathToExtension(x.getPath())).distinct();
         // the sorting support has been removed on 2017-04-21
         StreamOperation.of(stExt).peek(x -> count.increment()).head(opts.getHeadCount()).tail(opts.getTailCount())
                 .getStream().forEach(out::println);
         return count.longValue();
     }
 
-    long filterPathsAndLines(Stream<Path> stream, OptionSet opts) {
-        Map<Path, List<FileLine>> grepped = new HashMap<>();
-        Predicate<Path> grepFilter = LineMatcherFactory.createGrepFilter(opts.getGrepPatterns(), grepped);
-        if (opts.isCollectsExtension())
-            return collectExtensions(stream.filter(grepFilter), opts);
-        TerminalOperation action = getTerminalOperationForLines(opts, grepped);
-        if (opts.isInteractive()) {
-            Result r = new Result();
-            stream.filter(grepFilter).peek(r::addPath).forEachOrdered(action);
-            if (grepped.isEmpty())
-                out.print(message("i.notFound"));
-            else if (results.isEmpty() || grepped.size() != results.getFirst().getLineCount()) {
-                results.push(r);
-                out.println(results.summary());
-            }
-            return r.matchedCount();
+    long findDuplicates(Stream<PathEntry> stream, OptionSet opts, ExecutorService io) {
+        Function<Path, String> path2s = TerminalOperation.path2s(opts);
+        long count = 0L;
+        boolean first = true;
+        for (List<PathEntry> group : DuplicateFinder.find(stream, io)) {
+            // the groups are separated by empty lines
+            if (!first)
+                out.println();
+            first = false;
+            for (PathEntry entry : group)
+                out.println(path2s.apply(entry.getPath()));
+            count += group.size();
         }
-        else {
-            LongAdder count = new LongAdder();
-            stream.peek(x -> count.increment()).filter(grepFilter).forEachOrdered(action);
-            return count.longValue();
+        return count;
+    }
+
+    long filterPathsAndLines(Stream<PathEntry> stream, OptionSet opts, ExecutorService io) {
+        // the lines of a file are held from the grep until the file is printed
+        Map<Path, GrepResult> grepped = new ConcurrentHashMap<>();
+        final Consumer<PathEntry> release = x -> grepped.remove(x.getPath());
+        final ContentIndex contentIndex = opts.isUsesContentIndex() ? ContentIndex.load() : null;
+        final LineMatcherFactory.Retention retention = retention(opts, TerminalOperation.with(out, opts));
+        Predicate<PathEntry> grepFilter = LineMatcherFactory.createGrepFilter(opts.getGrepPatterns(), grepped,
+            contentIndex, retention, opts.getMaxCount().orElse(Integer.MAX_VALUE));
+        // greps files on the I/O executor if available, or on the grep workers unless the stream is parallel,
+        // keeping the order
+        final ExecutorService workers = (io == null && grepConcurrency(opts) > 1) ? createGrepExecutor(opts) : null;
+        final Function<Stream<PathEntry>, Stream<PathEntry>> grep;
+        if (io != null)
+            grep = x -> OrderedFilter.filter(x, grepFilter, io, ioConcurrency(opts));
+        else if (workers != null)
+            // a few files per worker are in flight, so that a slow file does not stall the others
+            grep = x -> OrderedFilter.filter(x, grepFilter, workers, grepConcurrency(opts) * 4);
+        else
+            grep = x -> x.filter(grepFilter);
+        try {
+            if (opts.isFindsDuplicates())
+                return findDuplicates(grep.apply(stream).peek(release), opts, io);
+            if (opts.isCollectsExtension())
+                return collectExtensions(grep.apply(stream).peek(release), opts);
+            TerminalOperation action = getTerminalOperationForLines(opts, grepped);
+            if (opts.isInteractive()) {
+                Result r = new Result();
+                grep.apply(stream).peek(x -> r.addPath(x.getPath())).forEachOrdered(action.andThen(release));
+                if (r.matchedCount() == 0)
+                    out.print(message("i.notFound"));
+                else if (results.isEmpty() || r.matchedCount() != results.getFirst().getLineCount()) {
+                    results.push(r);
+                    out.println(results.summary());
+                }
+                return r.matchedCount();
+            }
+            else {
+                LongAdder count = new LongAdder();
+                grep.apply(stream.peek(x -> count.increment())).forEachOrdered(action.andThen(release));
+                return count.longValue();
+            }
+        } finally {
+            if (workers != null)
+                workers.shutdownNow();
+            if (contentIndex != null)
+                contentIndex.saveIfChanged();
         }
     }
 
-    private TerminalOperation getTerminalOperationForLines(OptionSet opts, Map<Path, List<FileLine>> grepped) {
+    private static ExecutorService createGrepExecutor(OptionSet opts) {
+        final int concurrency = grepConcurrency(opts);
+        log.info(() -> "grep executor: concurrency=" + concurrency);
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(concurrency, r -> {
+            Thread th = new Thread(r, "potf-grep-" + n.incrementAndGet());
+            th.setDaemon(true);
+            return th;
+        });
+    }
+
+    /**
+     * Returns the number of the grep workers.
+     * The parallel stream greps files by itself, so the workers are used only if the threads are not specified.
+     */
+    static int grepConcurrency(OptionSet opts) {
+        return opts.getThreads().isPresent() ? 1 : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Returns what the grep keeps for the output, so that it does not read more than the output needs.
+     * @param opts the options
+     * @param action the operation for paths
+     * @return the retention
+     */
+    static LineMatcherFactory.Retention retention(OptionSet opts, TerminalOperation action) {
+        if (opts.isQuiet() || opts.isFindsDuplicates() || opts.isCollectsExtension())
+            return LineMatcherFactory.Retention.NONE;
+        if (action == TerminalOperation.NOT_FOR_PATH)
+            return opts.isPrintsMatchCount() ? LineMatcherFactory.Retention.COUNT : LineMatcherFactory.Retention.LINES;
+        return opts.isPrintsLineCount() ? LineMatcherFactory.Retention.COUNT : LineMatcherFactory.Retention.NONE;
+    }
+
+    private TerminalOperation getTerminalOperationForLines(OptionSet opts, Map<Path, GrepResult> grepped) {
         TerminalOperation action = TerminalOperation.with(out, opts);
         if (action == TerminalOperation.NOT_FOR_PATH) {
             Function<Path, String> path2s = TerminalOperation.path2s(opts);
-            return path -> {
-                for (FileLine line : grepped.get(path))
+            if (opts.isPrintsMatchCount())
+                return x -> out.printf("%s:%d%n", path2s.apply(x.getPath()), grepped.get(x.getPath()).count);
+            return x -> {
+                final Path path = x.getPath();
+                for (FileLine line : grepped.get(path).lines)
                     out.printf("%s:%d:%s%n", path2s.apply(path), line.number, line.text);
             };
         }
@@ -121,30 +243,49 @@ public final class App {
         return action;
     }
 
-    private Predicate<Path> integratedFilter(OptionSet opts) {
-        List<PathMatcher> a = new ArrayList<>();
-        PathMatcherFactory.createMatcherByName(opts).ifPresent(a::add);
-        PathMatcherFactory.extensionMatchers(opts).ifPresent(a::add);
-        PathMatcherFactory.createMatcherByExclusion(opts).ifPresent(a::add);
-        PathMatcherFactory.createMatcherByPath(opts).ifPresent(a::add);
-        a.addAll(PathMatcherFactory.fileTypeMatchers(opts));
-        a.addAll(PathMatcherFactory.fileSizeMatchers(opts));
-        a.addAll(PathMatcherFactory.ctimeMatchers(opts));
-        a.addAll(PathMatcherFactory.mtimeMatchers(opts));
-        a.addAll(PathMatcherFactory.atimeMatchers(opts));
-        a.addAll(PathMatcherFactory.fileContentTypeMatchers(opts));
-        return x -> {
-            // XXX why path stream contains null ?
-            if (x == null)
-                return false;
-            for (PathMatcher matcher : a)
-                if (!matcher.matches(x))
+    private Predicate<PathEntry> integratedFilter(OptionSet opts) {
+        MatcherChain chain = new MatcherChain(entryMatchers(opts));
+        // XXX why path stream contains null ?
+        return x -> x != null && chain.test(x);
+    }
+
+    /**
+     * Returns the test whether an entry below a directory can pass the filter.
+     * @param opts
+     * @return the predicate for directories
+     */
+    private static Predicate<Path> subtreeFilter(OptionSet opts) {
+        EntryMatcher[] matchers = entryMatchers(opts);
+        return dir -> {
+            for (EntryMatcher matcher : matchers)
+                if (!matcher.mayMatchBelow(dir))
                     return false;
             return true;
         };
     }
 
-    Stream<Path> createStream(OptionSet opts, LongAdder count) {
+    private static EntryMatcher[] entryMatchers(OptionSet opts) {
+        List<EntryMatcher> a = new ArrayList<>();
+        Consumer<PathMatcher> byPath = x -> a.add(EntryMatcher.of(x, EntryMatcher.Cost.PATH));
+        PathMatcherFactory.createMatcherByNameAndExtension(opts).ifPresent(byPath);
+        PathMatcherFactory.createMatcherByExclusion(opts).ifPresent(byPath);
+        PathMatcherFactory.createMatcherByPath(opts).ifPresent(byPath);
+        Consumer<PathMatcher> byAttributes = x -> a.add(EntryMatcher.of(x, EntryMatcher.Cost.ATTRIBUTES));
+        PathMatcherFactory.fileTypeMatchers(opts).forEach(byAttributes);
+        PathMatcherFactory.fileSizeMatchers(opts).forEach(byAttributes);
+        PathMatcherFactory.ctimeMatchers(opts).forEach(byAttributes);
+        PathMatcherFactory.mtimeMatchers(opts).forEach(byAttributes);
+        PathMatcherFactory.atimeMatchers(opts).forEach(byAttributes);
+        Consumer<PathMatcher> byContent = x -> a.add(EntryMatcher.of(x, EntryMatcher.Cost.CONTENT));
+        PathMatcherFactory.fileContentTypeMatchers(opts).forEach(byContent);
+        return a.toArray(new EntryMatcher[0]);
+    }
+
+    Stream<PathEntry> createStream(OptionSet opts, LongAdder count) {
+        return createStream(opts, count, null);
+    }
+
+    Stream<PathEntry> createStream(OptionSet opts, LongAdder count, ExecutorService io) {
         final int maxDepth = opts.getMaxDepth().orElse(Integer.MAX_VALUE);
         if (!results.isEmpty() && opts.getDirectories().isEmpty()) {
             // from cached result
@@ -153,17 +294,149 @@ public final class App {
             count.add(firstResult.matchedCount());
             if (opts.getMaxDepth().isPresent()) {
                 final int maxDepthPlus1 = maxDepth + 1;
-                return firstResult.pathStream().filter(x -> x.getNameCount() <= maxDepthPlus1).parallel();
+                return firstResult.pathStream().filter(x -> x.getNameCount() <= maxDepthPlus1).map(PathEntry::new)
+                        .parallel();
             }
-            return firstResult.pathStream().parallel();
+            return firstResult.pathStream().map(PathEntry::new).parallel();
         }
         if (isStdinAvailable()) {
             // from stdin
             log.debug(() -> "create stream from stdin");
-            return createPathStreamFromStdin();
+            return createPathStreamFromStdin().map(PathEntry::new);
         }
         // new path stream
         log.debug(() -> "create new path stream");
+        List<Path> dirs = rootDirectories(opts);
+        if (dirs.isEmpty())
+            dirs.add(opts.getRootPath());
+        log.debug(() -> "stream of roots, dirs = " + dirs);
+        log.debug(() -> "isIgnoreAccessDenied = " + opts.isIgnoreAccessDenied());
+        Optional<PathMatcher> optExclusiveFilter =
+            PathMatcherFactory.createMatcherByExclusion(opts).map(x -> path -> !x.matches(path)); // reverse
+        TraversalOptions traversalOptions = new TraversalOptions(maxDepth, opts.isIgnoreAccessDenied(), optExclusiveFilter)
+                .parallel(parallelism(opts) > 1).depthFirst(opts.isDepthFirst())
+                .followLinks(opts.isFollowsLinks()).ignoreFiles(opts.isReadsIgnoreFiles())
+                .oneFileSystem(opts.isOneFileSystem())
+                .subtreeFilter(subtreeFilter(opts))
+                .substrings(StringMatchingPredicate.literals(opts.getPathPatterns()),
+                    StringMatchingPredicate.literals(opts.getNamePatterns()));
+        if (io != null)
+            traversalOptions.prefetch(io, ioConcurrency(opts));
+        // the roots which have the index are read from it
+        List<Stream<PathEntry>> streams = new ArrayList<>();
+        List<Path> dirsToWalk = new ArrayList<>();
+        for (Path dir : dirs) {
+            Optional<PathIndex> index = usesIndex(opts) ? PathIndex.open(dir, traversalOptions) : Optional.empty();
+            if (index.isPresent()) {
+                log.debug(() -> "using index: " + dir);
+                streams.add(index.get().entries(dir, traversalOptions));
+            }
+            else
+                dirsToWalk.add(dir);
+        }
+        if (!dirsToWalk.isEmpty())
+            streams.add(PathIterator.entries(dirsToWalk, traversalOptions));
+        return streams.stream().reduce(Stream::concat).get().peek(path -> count.increment());
+    }
+
+    /**
+     * Returns whether the path index may be used.
+     * The index has the type, the size and the mtime only,
+     * so it is not used when the ctime, the atime, the permissions or the owners are required,
+     * nor to find duplicates, which requires the file keys and the current sizes.
+     * @param opts
+     * @return true if the index may be used
+     */
+    static boolean usesIndex(OptionSet opts) {
+        if (opts.isNoIndex() || opts.isFindsDuplicates())
+            return false;
+        if (!opts.getCtimePatterns().isEmpty() || !opts.getAtimePatterns().isEmpty())
+            return false;
+        if (opts.isPrintsDetailList() || opts.isPrintsPosixLikeList() || opts.isPrintsAsTsv())
+            return false;
+        return opts.getSortKeys().stream().noneMatch(x -> x.matches("[_+]?[ca]time"));
+    }
+
+    void updateIndex(OptionSet opts) {
+        List<Path> dirs = rootDirectories(opts);
+        if (dirs.isEmpty())
+            dirs.add(opts.getRootPath());
+        for (Path dir : dirs) {
+            final long startTime = System.currentTimeMillis();
+            final long count;
+            try {
+                count = PathIndex.update(dir, indexOptions(opts));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            out.println(message("i.indexUpdated", toRealPath(dir), count, (System.currentTimeMillis() - startTime) / 1_000f));
+        }
+    }
+
+    void startDaemon(OptionSet opts) {
+        List<Path> dirs = rootDirectories(opts);
+        if (dirs.isEmpty())
+            dirs.add(opts.getRootPath());
+        List<IndexDaemon> daemons = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (Path dir : dirs) {
+            final IndexDaemon daemon;
+            try {
+                daemon = new IndexDaemon(dir, () -> indexOptions(opts));
+                daemon.start();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            out.println(message("i.daemonStarted", daemon.getRoot(), daemon.size()));
+            daemons.add(daemon);
+            Thread th = new Thread(daemon, "potf-daemon-" + daemons.size());
+            th.start();
+            threads.add(th);
+        }
+        // the changes since the last checkpoint are written on exit
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> daemons.forEach(IndexDaemon::checkpointIfDirty)));
+        try {
+            for (Thread th : threads)
+                th.join();
+        } catch (InterruptedException e) {
+            threads.forEach(Thread::interrupt);
+        }
+    }
+
+    void startServer() {
+        final String name =
+            Launcher.serverFileName(Paths.get("").toAbsolutePath().toString(), Charset.defaultCharset().name());
+        final Server server = new Server(InteractiveMode.getWorkingDirectory().toPath().resolve(name));
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        out.println(message("i.serverStarted", server.getDirectory(), String.valueOf(server.getPort())));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.run();
+    }
+
+    private static TraversalOptions indexOptions(OptionSet opts) {
+        // the index has all entries, and the filters are applied when it is read
+        return new TraversalOptions(Integer.MAX_VALUE, opts.isIgnoreAccessDenied(), Optional.empty())
+                .followLinks(opts.isFollowsLinks()).ignoreFiles(opts.isReadsIgnoreFiles())
+                .oneFileSystem(opts.isOneFileSystem());
+    }
+
+    /**
+     * Returns the root directories without duplicates.
+     * A directory inside another root, both by its path as specified and by its real path, is removed,
+     * unless the walk of the outer root may skip it (by max depth, ignore files, file system boundaries,
+     * exclusion or path patterns).
+     * So the entries are printed with the prefix which was specified.
+     * @param opts
+     * @return the list of directories
+     */
+    static List<Path> rootDirectories(OptionSet opts) {
+        final boolean collapsesNested = !opts.getMaxDepth().isPresent() && !opts.isReadsIgnoreFiles()
+                                        && !opts.isOneFileSystem() && opts.getExclusionPatterns().isEmpty()
+                                        && opts.getPathPatterns().isEmpty();
         List<Path> dirs = new ArrayList<>();
         for (String dirString : opts.getDirectories()) {
             Path dir = Paths.get(dirString);
@@ -174,15 +447,28 @@ public final class App {
             else
                 dirs.add(dir);
         }
-        if (dirs.isEmpty())
-            dirs.add(opts.getRootPath());
-        log.debug(() -> "stream concatenation, dirs = " + dirs);
-        log.debug(() -> "isIgnoreAccessDenied = " + opts.isIgnoreAccessDenied());
-        Optional<PathMatcher> optExclusiveFilter =
-            PathMatcherFactory.createMatcherByExclusion(opts).map(x -> path -> !x.matches(path)); // reverse
-        return dirs.stream()
-                .map(dir -> PathIterator.streamOf(dir, maxDepth, opts.isIgnoreAccessDenied(), optExclusiveFilter))
-                .reduce(Stream::concat).orElseGet(Stream::empty).peek(path -> count.increment());
+        if (collapsesNested)
+            for (int i = dirs.size() - 1; i >= 0; i--)
+                for (int j = 0; j < dirs.size(); j++)
+                    if (i != j && isNested(dirs.get(i), dirs.get(j))) {
+                        System.err.println(message("w.nesteddir", dirs.get(i), dirs.get(j)));
+                        dirs.remove(i);
+                        break;
+                    }
+        return dirs;
+    }
+
+    private static boolean isNested(Path dir, Path outer) {
+        // the outer walk prints the same prefix, and reaches the directory without links
+        return dir.startsWith(outer) && toRealPath(dir).startsWith(toRealPath(outer));
+    }
+
+    private static Path toRealPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
     }
 
     @SuppressWarnings("resource")
@@ -255,6 +541,12 @@ public final class App {
             out.println(version());
         else if (opts.isHelp())
             showHelp();
+        else if (opts.isUpdatesIndex())
+            updateIndex(opts);
+        else if (opts.isDaemon())
+            startDaemon(opts);
+        else if (opts.isServer())
+            startServer();
         else
             find(opts);
     }
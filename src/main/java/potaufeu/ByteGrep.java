@@ -0,0 +1,421 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A grep of literal patterns on the encoded bytes of files, which decodes only the matched lines.
+ *
+ * <p>The file is mapped into memory (or read at once if small), and the bytes run through the automata
+ * of the encoded patterns (case-sensitive ones and ASCII case-insensitive ones),
+ * counting the line terminators as LineNumberReader does.
+ * This works for the charsets in which a pattern is found in the bytes only where its chars are:
+ * UTF-8, which is self-synchronizing, and the single-byte ones.
+ * As the reader of the lines fails on malformed input, the bytes are validated on the way,
+ * and the grep reports a malformed file to try other charsets.
+ * The chunks of bytes are taken from a pool, and returned after the grep.</p>
+ */
+final class ByteGrep {
+
+    static final long MAP_SIZE = 1L << 28;
+    static final int CHUNK_SIZE = 1 << 16;
+
+    // a pool rather than thread locals, since a virtual thread greps only a few files
+    private static final Queue<byte[]> chunks = new ConcurrentLinkedQueue<>();
+
+    private final Charset charset;
+    private final Automaton sensitive; // null: no patterns
+    private final Automaton insensitive; // null: no patterns
+    private final boolean[] plainBytes; // ASCII but newlines
+    private final boolean[] idleBytes; // plain bytes which do not start the patterns
+
+    private ByteGrep(Charset charset, List<byte[]> sensitive, List<byte[]> insensitive) {
+        this.charset = charset;
+        this.sensitive = sensitive.isEmpty() ? null : new Automaton(sensitive, false);
+        this.insensitive = insensitive.isEmpty() ? null : new Automaton(insensitive, true);
+        this.plainBytes = new boolean[256];
+        this.idleBytes = new boolean[256];
+        for (int b = 0; b < 0x80; b++) {
+            plainBytes[b] = b != '\n' && b != '\r';
+            idleBytes[b] = plainBytes[b] && (this.sensitive == null || this.sensitive.transitions[b] == 0)
+                           && (this.insensitive == null || this.insensitive.transitions[b] == 0);
+        }
+    }
+
+    /**
+     * Creates the grep of the patterns, if all of them are literals which can be searched in bytes.
+     * @param patterns the patterns, all of which have to be in a matched line
+     * @param charset the charset of files
+     * @return the grep, or empty if not available
+     */
+    static Optional<ByteGrep> create(List<String> patterns, Charset charset) {
+        if (!charset.equals(UTF_8) && !charset.equals(ISO_8859_1) && !charset.equals(US_ASCII))
+            return Optional.empty();
+        CharsetEncoder encoder = charset.newEncoder();
+        List<byte[]> sensitive = new ArrayList<>();
+        List<byte[]> insensitive = new ArrayList<>();
+        for (String pattern : patterns) {
+            final String literal = LiteralMatcher.literalOf(pattern);
+            if (literal == null || literal.isEmpty() || literal.indexOf('\n') >= 0 || literal.indexOf('\r') >= 0
+                || !encoder.canEncode(literal))
+                return Optional.empty();
+            (LiteralMatcher.ignoresCase(pattern) ? insensitive : sensitive).add(literal.getBytes(charset));
+        }
+        if (patterns.isEmpty() || sensitive.size() > 64 || insensitive.size() > 64)
+            return Optional.empty();
+        return Optional.of(new ByteGrep(charset, sensitive, insensitive));
+    }
+
+    /**
+     * Greps the file.
+     * @param path the path
+     * @return the matched lines, or null if the file is malformed in the charset
+     * @throws IOException
+     */
+    List<FileLine> grep(Path path) throws IOException {
+        GrepResult result = grep(path, Integer.MAX_VALUE, true);
+        return (result == null) ? null : result.lines;
+    }
+
+    /**
+     * Greps the file until the limit of the matched lines.
+     * The bytes after the limit are neither scanned nor validated.
+     * @param path the path
+     * @param limit the maximum number of the matched lines
+     * @param keepsLines true if the lines are decoded, false if only counted
+     * @return the result, or null if the file is malformed in the charset
+     * @throws IOException
+     */
+    GrepResult grep(Path path, int limit, boolean keepsLines) throws IOException {
+        return grep(path, limit, keepsLines, null);
+    }
+
+    /**
+     * Greps the file until the limit of the matched lines, collecting the trigrams of the bytes read.
+     * @param path the path
+     * @param limit the maximum number of the matched lines
+     * @param keepsLines true if the lines are decoded, false if only counted
+     * @param trigrams the trigrams to collect, or null
+     * @return the result, or null if the file is malformed in the charset
+     * @throws IOException
+     */
+    GrepResult grep(Path path, int limit, boolean keepsLines, ContentIndex.Trigrams trigrams) throws IOException {
+        if (limit <= 0)
+            return GrepResult.counted(0);
+        byte[] chunk = chunks.poll();
+        if (chunk == null)
+            chunk = new byte[CHUNK_SIZE];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            Scanner scanner = new Scanner(limit, keepsLines, trigrams);
+            final boolean wellFormed =
+                size <= CHUNK_SIZE ? read(channel, chunk, scanner) : map(channel, size, chunk, scanner);
+            if (!wellFormed)
+                return null;
+            if (!scanner.stopped) {
+                if (scanner.following > 0)
+                    return null; // cut at the end
+                scanner.end(scanner.length);
+            }
+            if (!keepsLines)
+                return GrepResult.counted(scanner.count);
+            // the lines across the chunks
+            for (long[] a : scanner.spanning)
+                scanner.fileLines.set((int) a[0], new FileLine((int) a[1], decode(channel, a[2], a[3])));
+            return GrepResult.of(scanner.fileLines);
+        } finally {
+            chunks.offer(chunk);
+        }
+    }
+
+    /*
+     * Reads a small file at once, since mapping costs more than reading.
+     */
+    private static boolean read(FileChannel channel, byte[] chunk, Scanner scanner) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // fill
+        }
+        return scanner.feed(chunk, buffer.position(), 0L);
+    }
+
+    private static boolean map(FileChannel channel, long size, byte[] chunk, Scanner scanner) throws IOException {
+        for (long offset = 0L; offset < size; offset += MAP_SIZE) {
+            MappedByteBuffer buffer =
+                channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(MAP_SIZE, size - offset));
+            // an array is scanned faster than a buffer
+            for (long position = offset; buffer.hasRemaining(); position += chunk.length) {
+                final int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                if (!scanner.feed(chunk, n, position))
+                    return false;
+                if (scanner.stopped)
+                    return true;
+            }
+        }
+        return true;
+    }
+
+    private String decode(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, start + buffer.position()) < 0)
+                break; // truncated
+        return new String(buffer.array(), 0, buffer.position(), charset);
+    }
+
+    /**
+     * The state of a scan, which continues across the chunks of a file.
+     */
+    private final class Scanner {
+
+        final int limit;
+        final boolean keepsLines;
+        final ContentIndex.Trigrams trigrams; // null: not collected
+        final List<FileLine> fileLines = new ArrayList<>();
+        final List<long[]> spanning = new ArrayList<>(); // index, line number, start, end
+        byte[] chunk;
+        long chunkOffset;
+        long length; // scanned
+        long lineNumber = 1L;
+        long lineStart = 0L;
+        boolean afterCr;
+        boolean matches;
+        int state1; // the offset of the row of the state in the transitions
+        int state2;
+        long found1;
+        long found2;
+        int following; // the continuation bytes of UTF-8 to follow
+        int min = 0x80; // the range of the next continuation byte
+        int max = 0xBF;
+        int count; // the matched lines
+        boolean stopped; // at the limit
+
+        Scanner(int limit, boolean keepsLines, ContentIndex.Trigrams trigrams) {
+            this.limit = limit;
+            this.keepsLines = keepsLines;
+            this.trigrams = trigrams;
+        }
+
+        boolean feed(byte[] a, int n, long offset) {
+            if (trigrams != null)
+                trigrams.update(a, 0, n);
+            return scan(a, n, offset);
+        }
+
+        /*
+         * Scans the bytes, and returns false if malformed.
+         */
+        boolean scan(byte[] a, int n, long offset) {
+            this.chunk = a;
+            this.chunkOffset = offset;
+            this.length = offset + n;
+            final boolean ascii = charset.equals(US_ASCII);
+            final boolean utf8 = charset.equals(UTF_8);
+            final int[] transitions1 = sensitive == null ? null : sensitive.transitions;
+            final int[] transitions2 = insensitive == null ? null : insensitive.transitions;
+            for (int i = 0; i < n; i++) {
+                if (following == 0 && (matches || (state1 | state2) == 0)) {
+                    // the bytes which change nothing are skipped in a tight loop,
+                    // but not in a multibyte char, whose continuation bytes are validated
+                    final boolean[] skippable = matches ? plainBytes : idleBytes;
+                    final int start = i;
+                    while (i < n && skippable[a[i] & 0xFF])
+                        i++;
+                    if (i == n) {
+                        afterCr &= i == start;
+                        break;
+                    }
+                    if (i > start)
+                        afterCr = false;
+                }
+                final int b = a[i] & 0xFF;
+                if (b >= 0x80 || following > 0) {
+                    if (ascii)
+                        return false;
+                    if (utf8 && !validate(b))
+                        return false;
+                }
+                else if (b == '\n' || b == '\r') {
+                    final long position = offset + i;
+                    if (b == '\n' && afterCr) {
+                        // CR LF
+                        afterCr = false;
+                        lineStart = position + 1;
+                        continue;
+                    }
+                    end(position);
+                    if (stopped)
+                        return true;
+                    lineNumber++;
+                    lineStart = position + 1;
+                    afterCr = b == '\r';
+                    matches = false;
+                    state1 = state2 = 0;
+                    found1 = found2 = 0L;
+                    continue;
+                }
+                afterCr = false;
+                if (matches)
+                    continue;
+                boolean found = true;
+                if (transitions1 != null) {
+                    state1 = transitions1[state1 | b];
+                    if (state1 < 0) {
+                        state1 = ~state1;
+                        found1 |= sensitive.outputs[state1 >> 8];
+                    }
+                    found = found1 == sensitive.goal;
+                }
+                if (transitions2 != null) {
+                    state2 = transitions2[state2 | b];
+                    if (state2 < 0) {
+                        state2 = ~state2;
+                        found2 |= insensitive.outputs[state2 >> 8];
+                    }
+                    found &= found2 == insensitive.goal;
+                }
+                matches = found;
+                // the line is counted at once unless it is decoded
+                if (matches && !keepsLines && ++count >= limit) {
+                    stopped = true;
+                    return true;
+                }
+            }
+            return true;
+        }
+
+        private boolean validate(int b) {
+            if (following > 0) {
+                if (b < min || b > max)
+                    return false;
+                following--;
+                min = 0x80;
+                max = 0xBF;
+            }
+            else if (b >= 0xC2 && b <= 0xDF)
+                following = 1;
+            else if (b >= 0xE0 && b <= 0xEF) {
+                following = 2;
+                if (b == 0xE0)
+                    min = 0xA0; // overlong
+                else if (b == 0xED)
+                    max = 0x9F; // surrogates
+            }
+            else if (b >= 0xF0 && b <= 0xF4) {
+                following = 3;
+                if (b == 0xF0)
+                    min = 0x90; // overlong
+                else if (b == 0xF4)
+                    max = 0x8F; // over U+10FFFF
+            }
+            else
+                return false;
+            return true;
+        }
+
+        /*
+         * Ends the line at the position.
+         */
+        void end(long position) {
+            if (!matches || !keepsLines)
+                return;
+            if (++count >= limit)
+                stopped = true;
+            if (lineStart >= chunkOffset)
+                fileLines.add(new FileLine((int) lineNumber,
+                    new String(chunk, (int) (lineStart - chunkOffset), (int) (position - lineStart), charset)));
+            else {
+                spanning.add(new long[] { fileLines.size(), lineNumber, lineStart, position });
+                fileLines.add(null);
+            }
+        }
+    }
+
+    /**
+     * The Aho-Corasick automaton on bytes, with the complete transitions.
+     * A transition is the offset of the row of the next state, complemented if the state has outputs,
+     * so that the outputs are read only at the ends of the patterns.
+     */
+    private static final class Automaton {
+
+        final int[] transitions; // state * 256 + byte
+        final long[] outputs;
+        final long goal;
+
+        Automaton(List<byte[]> patterns, boolean ignoreCase) {
+            // trie
+            List<int[]> children = new ArrayList<>();
+            List<Long> outputList = new ArrayList<>();
+            children.add(newChildren());
+            outputList.add(0L);
+            for (int i = 0; i < patterns.size(); i++) {
+                int state = 0;
+                for (byte x : patterns.get(i)) {
+                    final int b = ignoreCase ? fold(x & 0xFF) : x & 0xFF;
+                    if (children.get(state)[b] < 0) {
+                        children.get(state)[b] = children.size();
+                        children.add(newChildren());
+                        outputList.add(0L);
+                    }
+                    state = children.get(state)[b];
+                }
+                outputList.set(state, outputList.get(state) | (1L << i));
+            }
+            this.goal = patterns.size() == 64 ? -1L : (1L << patterns.size()) - 1L;
+            final int n = children.size();
+            this.transitions = new int[n << 8];
+            this.outputs = new long[n];
+            for (int state = 0; state < n; state++)
+                outputs[state] = outputList.get(state);
+            // failure links in breadth-first order
+            int[] failures = new int[n];
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int b = 0; b < 256; b++) {
+                final int next = children.get(0)[b];
+                transitions[b] = Math.max(next, 0);
+                if (next > 0)
+                    queue.add(next);
+            }
+            while (!queue.isEmpty()) {
+                final int state = queue.poll();
+                outputs[state] |= outputs[failures[state]];
+                for (int b = 0; b < 256; b++) {
+                    final int next = children.get(state)[b];
+                    if (next < 0)
+                        transitions[(state << 8) | b] = transitions[(failures[state] << 8) | b];
+                    else {
+                        transitions[(state << 8) | b] = next;
+                        failures[next] = transitions[(failures[state] << 8) | b];
+                        queue.add(next);
+                    }
+                }
+            }
+            if (ignoreCase)
+                for (int state = 0; state < n; state++)
+                    for (int b = 'A'; b <= 'Z'; b++)
+                        transitions[(state << 8) | b] = transitions[(state << 8) | fold(b)];
+            for (int i = 0; i < transitions.length; i++) {
+                final int next = transitions[i];
+                transitions[i] = outputs[next] == 0L ? next << 8 : ~(next << 8);
+            }
+        }
+
+        private static int[] newChildren() {
+            int[] a = new int[256];
+            Arrays.fill(a, -1);
+            return a;
+        }
+
+        private static int fold(int b) {
+            return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+        }
+    }
+
+}
@@ -0,0 +1,559 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * A persistent index of the byte trigrams in the contents of grepped files, in the style of codesearch.
+ * Each file has an ID with its size and mtime, and each trigram has the list of IDs of the files which contain it.
+ *
+ * <p>The trigrams of the ASCII literals which the grep patterns require select the candidate files,
+ * and the other files are not opened. A file which is not indexed yet, or whose size or mtime has changed,
+ * is always a candidate, and is indexed from the bytes which the grep reads;
+ * the index file is rewritten after the grep, without the files which no longer exist.
+ * The bytes of ASCII characters are the same in the charsets which the grep tries,
+ * so the byte trigrams are valid for them (the index is not used otherwise).</p>
+ */
+final class ContentIndex {
+
+    private static final Log log = Log.logger(ContentIndex.class);
+
+    private static final byte[] MAGIC = "POTFCIX1".getBytes(ISO_8859_1);
+    private static final long MAX_FILE_SIZE = 1L << 30;
+    private static final int MAX_TRIGRAMS = 20_000; // more than this: probably not a text file
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final List<FileState> files;
+    private final Map<String, Integer> ids;
+    private final Map<Integer, IntList> postings;
+    private final BitSet unindexed; // the files which are always candidates
+    private final BitSet dropped; // replaced or removed
+    private boolean changed;
+
+    private ContentIndex(Path file) {
+        this.file = file;
+        this.files = new ArrayList<>();
+        this.ids = new HashMap<>();
+        this.postings = new HashMap<>();
+        this.unindexed = new BitSet();
+        this.dropped = new BitSet();
+    }
+
+    /**
+     * Loads the index file, or creates an empty index if it does not exist.
+     * @return the index
+     */
+    static ContentIndex load() {
+        final Path file = InteractiveMode.getWorkingDirectory().toPath().resolve("index").resolve("content.idx");
+        ContentIndex index = new ContentIndex(file);
+        if (Files.isRegularFile(file))
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+                index.read(in);
+            } catch (IOException e) {
+                log.warn(() -> "failed to read content index: " + file, e);
+                return new ContentIndex(file);
+            }
+        log.debug(() -> String.format("content index: %d files, %d trigrams", index.files.size(), index.postings.size()));
+        return index;
+    }
+
+    /**
+     * Returns the number of the indexed files.
+     * @return the number
+     */
+    synchronized int size() {
+        return files.size() - dropped.cardinality();
+    }
+
+    /**
+     * Returns the filter of candidate files for the grep patterns.
+     * The files which are not indexed yet are candidates, to be indexed by {@link #add(Path, Trigrams)}.
+     * @param patterns the grep patterns (all of them must match)
+     * @return the filter
+     */
+    Predicate<PathEntry> candidates(List<String> patterns) {
+        final BitSet bits = candidateIds(requiredTrigrams(patterns));
+        return entry -> {
+            final String key = key(entry.getPath());
+            if (key == null)
+                return true;
+            final Integer id = indexedId(key, entry);
+            synchronized (this) {
+                return id == null || bits == null || unindexed.get(id) || bits.get(id);
+            }
+        };
+    }
+
+    /**
+     * Returns the collector of the trigrams of the file to index, if it is not indexed yet.
+     * The grep feeds it with the bytes which it reads.
+     * @param entry the file
+     * @return the collector, or null if the file is indexed or cannot be indexed
+     */
+    Trigrams newTrigrams(PathEntry entry) {
+        final String key = key(entry.getPath());
+        if (key == null || indexedId(key, entry) != null)
+            return null;
+        final BasicFileAttributes attr = attributes(entry);
+        return (attr == null) ? null : new Trigrams(key, attr.size(), attr.lastModifiedTime().toMillis());
+    }
+
+    /*
+     * Returns the ID of the file, if indexed with the current size and mtime.
+     */
+    private Integer indexedId(String key, PathEntry entry) {
+        final BasicFileAttributes attr = attributes(entry);
+        if (attr == null)
+            return null;
+        synchronized (this) {
+            final Integer id = ids.get(key);
+            if (id != null && files.get(id).size == attr.size()
+                && files.get(id).mtime == attr.lastModifiedTime().toMillis())
+                return id;
+        }
+        return null;
+    }
+
+    private static BasicFileAttributes attributes(PathEntry entry) {
+        try {
+            final BasicFileAttributes attr = entry.attributes();
+            if (!(attr instanceof PathIndex.IndexedAttributes))
+                return attr;
+            // the attributes from the path index are as of its last update
+            return Files.readAttributes(entry.getPath(), BasicFileAttributes.class);
+        } catch (IOException | UncheckedIOException e) {
+            return null; // the grep will report it
+        }
+    }
+
+    /**
+     * Adds the file with the trigrams collected by the grep.
+     * If the grep did not read the whole file (e.g. stopped at the max count), the file is read here.
+     * @param path the path
+     * @param trigrams the trigrams
+     */
+    void add(Path path, Trigrams trigrams) {
+        int[] a = null;
+        if (trigrams.size <= MAX_FILE_SIZE)
+            try {
+                a = trigrams.isComplete() ? trigrams.toArray() : trigrams(path);
+            } catch (IOException e) {
+                log.debug(() -> "cannot index: " + path + ": " + e);
+                return;
+            }
+        add(trigrams.key, trigrams.size, trigrams.mtime, a);
+    }
+
+    /**
+     * Writes the index file if changed.
+     */
+    synchronized void saveIfChanged() {
+        if (!changed)
+            return;
+        for (int id = 0; id < files.size(); id++)
+            if (!dropped.get(id) && Files.notExists(Paths.get(files.get(id).key)))
+                dropped.set(id);
+        try {
+            Files.createDirectories(file.getParent());
+            final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            try {
+                try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), BUFFER_SIZE))) {
+                    write(out);
+                }
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            changed = false;
+        } catch (IOException e) {
+            log.warn(() -> "failed to write content index: " + file, e);
+        }
+    }
+
+    /**
+     * Returns the trigrams of the ASCII literals which the patterns require.
+     * @param patterns the patterns
+     * @return the trigrams, or empty if no trigrams are required
+     */
+    static Set<Integer> requiredTrigrams(List<String> patterns) {
+        Set<Integer> a = new HashSet<>();
+        for (String pattern : patterns)
+            for (String literal : requiredLiterals(pattern)) {
+                final byte[] bytes = literal.getBytes(ISO_8859_1);
+                for (int i = 0; i + 2 < bytes.length; i++)
+                    a.add(trigram(bytes[i], bytes[i + 1], bytes[i + 2]));
+            }
+        return a;
+    }
+
+    /**
+     * Returns the ASCII literals which the strings matching the pattern contain.
+     * For a regular expression, only the literals outside of groups and classes are taken,
+     * and nothing is taken if it has alternatives, or flags which change the meaning of literals.
+     * @param pattern the pattern (see {@link StringMatchingPredicate#create(String)})
+     * @return the literals, which may be shorter than a trigram
+     */
+    static List<String> requiredLiterals(String pattern) {
+        List<String> a = new ArrayList<>();
+        if (!pattern.startsWith("(?")) {
+            addAsciiRuns(a, pattern);
+            return a;
+        }
+        final int end = pattern.indexOf(')');
+        if (end < 0 || !pattern.substring(2, end).matches("[dmsu]*"))
+            return a;
+        final String re = pattern.substring(end + 1);
+        // alternatives, quotes and embedded flags which change the meaning of literals
+        if (re.contains("|") || re.contains("\\Q") || re.matches("(?s).*\\(\\?[a-zA-Z-]*[ix].*"))
+            return a;
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < re.length(); i++) {
+            char c = re.charAt(i);
+            boolean literal = false;
+            if (c == '\\' && i + 1 < re.length()) {
+                c = re.charAt(++i);
+                literal = !Character.isLetterOrDigit(c);
+                if ("xuckpPN0123456789".indexOf(c) >= 0)
+                    i = skipEscapeArguments(re, i + 1) - 1; // e.g. \x41, \p{L}, \1
+            }
+            else if (c == '[')
+                i = skipClass(re, i);
+            else if (c == '{')
+                i = Math.max(i, re.indexOf('}', i));
+            else if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else
+                literal = ".^$*+?}]".indexOf(c) < 0;
+            if (!literal || depth > 0) {
+                addAsciiRuns(a, run.toString());
+                run.setLength(0);
+                continue;
+            }
+            // the char is optional if followed by these quantifiers
+            final char next = (i + 1 < re.length()) ? re.charAt(i + 1) : 0;
+            if (next == '?' || next == '*' || next == '{') {
+                addAsciiRuns(a, run.toString());
+                run.setLength(0);
+                continue;
+            }
+            run.append(c);
+            if (next == '+') {
+                addAsciiRuns(a, run.toString());
+                run.setLength(0);
+            }
+        }
+        addAsciiRuns(a, run.toString());
+        return a;
+    }
+
+    private static int skipEscapeArguments(String re, int i) {
+        final char c = re.charAt(i - 1);
+        if (i < re.length() && (re.charAt(i) == '{' || re.charAt(i) == '<')) {
+            final int end = re.indexOf(re.charAt(i) == '{' ? '}' : '>', i);
+            return (end < 0) ? re.length() : end + 1;
+        }
+        final int max;
+        switch (c) {
+            case 'x':
+                max = 2;
+                break;
+            case 'u':
+                max = 4;
+                break;
+            case '0':
+                max = 3;
+                break;
+            case 'c':
+            case 'p':
+            case 'P':
+                max = 1;
+                break;
+            default:
+                max = Character.isDigit(c) ? Integer.MAX_VALUE : 0; // a back reference
+        }
+        final int end = (int) Math.min(re.length(), (long) i + max);
+        while (i < end && (c == 'c' || (Character.isDigit(c) ? Character.isDigit(re.charAt(i))
+            : Character.isLetterOrDigit(re.charAt(i)))))
+            i++;
+        return i;
+    }
+
+    private static int skipClass(String re, int start) {
+        int depth = 0;
+        for (int i = start; i < re.length(); i++) {
+            final char c = re.charAt(i);
+            if (c == '\\')
+                i++;
+            else if (c == '[')
+                depth++;
+            else if (c == ']' && i > start + 1 && --depth == 0)
+                return i;
+        }
+        return re.length();
+    }
+
+    private static void addAsciiRuns(List<String> a, String s) {
+        for (String x : s.split("[^\\x20-\\x7E]+"))
+            if (!x.isEmpty())
+                a.add(x);
+    }
+
+    private synchronized BitSet candidateIds(Set<Integer> trigrams) {
+        if (trigrams.isEmpty())
+            return null;
+        BitSet bits = null;
+        for (int trigram : trigrams) {
+            IntList list = postings.get(trigram);
+            BitSet x = new BitSet();
+            if (list != null)
+                for (int i = 0; i < list.size; i++)
+                    x.set(list.a[i]);
+            if (bits == null)
+                bits = x;
+            else
+                bits.and(x);
+        }
+        return bits;
+    }
+
+    private synchronized void add(String key, long size, long mtime, int[] trigrams) {
+        final Integer oldId = ids.get(key);
+        if (oldId != null)
+            dropped.set(oldId);
+        final int id = files.size();
+        files.add(new FileState(key, size, mtime));
+        ids.put(key, id);
+        if (trigrams == null)
+            unindexed.set(id);
+        else
+            for (int trigram : trigrams)
+                postings.computeIfAbsent(trigram, x -> new IntList()).add(id);
+        changed = true;
+    }
+
+    /*
+     * Returns the distinct trigrams in the file, or null if there are too many.
+     */
+    private static int[] trigrams(Path path) throws IOException {
+        Trigrams trigrams = new Trigrams(null, 0L, 0L);
+        try (InputStream is = Files.newInputStream(path)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int r; (r = is.read(buffer)) > 0 && !trigrams.tooMany;)
+                trigrams.update(buffer, 0, r);
+        }
+        return trigrams.toArray();
+    }
+
+    private static int trigram(byte b0, byte b1, byte b2) {
+        return ((b0 & 0xFF) << 16) | ((b1 & 0xFF) << 8) | (b2 & 0xFF);
+    }
+
+    private static String key(Path path) {
+        final Path absolutePath = path.toAbsolutePath().normalize();
+        final String s = absolutePath.toString();
+        try {
+            // the names not representable in the platform encoding are not indexed
+            return absolutePath.getFileSystem().getPath(s).equals(absolutePath) ? s : null;
+        } catch (InvalidPathException e) {
+            return null;
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("not a content index file");
+        final int fileCount = in.readInt();
+        for (int id = 0; id < fileCount; id++) {
+            FileState f = new FileState(in.readUTF(), in.readLong(), in.readLong());
+            if (in.readBoolean())
+                unindexed.set(id);
+            files.add(f);
+            ids.put(f.key, id);
+        }
+        final int trigramCount = in.readInt();
+        for (int i = 0; i < trigramCount; i++) {
+            final int trigram = in.readInt();
+            final int n = in.readInt();
+            IntList list = new IntList();
+            int id = -1;
+            for (int k = 0; k < n; k++) {
+                id += readVarInt(in);
+                list.add(id);
+            }
+            postings.put(trigram, list);
+        }
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        // drops the replaced and removed files, and renumbers the rest
+        int[] newIds = new int[files.size()];
+        int fileCount = 0;
+        for (int id = 0; id < files.size(); id++)
+            newIds[id] = dropped.get(id) ? -1 : fileCount++;
+        out.write(MAGIC);
+        out.writeInt(fileCount);
+        for (int id = 0; id < files.size(); id++)
+            if (newIds[id] >= 0) {
+                FileState f = files.get(id);
+                out.writeUTF(f.key);
+                out.writeLong(f.size);
+                out.writeLong(f.mtime);
+                out.writeBoolean(unindexed.get(id));
+            }
+        List<Integer> trigrams = new ArrayList<>(postings.keySet());
+        Collections.sort(trigrams);
+        IntList live = new IntList();
+        List<Integer> written = new ArrayList<>();
+        for (int trigram : trigrams) {
+            IntList list = postings.get(trigram);
+            boolean any = false;
+            for (int i = 0; i < list.size && !any; i++)
+                any = newIds[list.a[i]] >= 0;
+            if (any)
+                written.add(trigram);
+        }
+        out.writeInt(written.size());
+        for (int trigram : written) {
+            IntList list = postings.get(trigram);
+            live.size = 0;
+            for (int i = 0; i < list.size; i++)
+                if (newIds[list.a[i]] >= 0)
+                    live.add(newIds[list.a[i]]);
+            out.writeInt(trigram);
+            out.writeInt(live.size);
+            int prev = -1;
+            for (int i = 0; i < live.size; i++) {
+                PathIndex.writeVarLong(out, live.a[i] - prev);
+                prev = live.a[i];
+            }
+        }
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0;; shift += 7) {
+            final byte b = in.readByte();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    /**
+     * The distinct trigrams in the bytes of a file, collected while the file is read.
+     * This class is not thread-safe.
+     */
+    static final class Trigrams {
+        final String key;
+        final long size;
+        final long mtime;
+        private final BitSet seen = new BitSet();
+        private final IntList a = new IntList();
+        private int t; // the last bytes
+        private long length;
+        private boolean tooMany;
+
+        Trigrams(String key, long size, long mtime) {
+            this.key = key;
+            this.size = size;
+            this.mtime = mtime;
+        }
+
+        void update(byte[] b, int offset, int n) {
+            length += n;
+            if (tooMany)
+                return;
+            for (int i = offset, end = offset + n; i < end; i++) {
+                t = ((t << 8) | (b[i] & 0xFF)) & 0xFFFFFF;
+                if (length - (end - i) >= 2 && !seen.get(t)) {
+                    seen.set(t);
+                    a.add(t);
+                    if (a.size > MAX_TRIGRAMS) {
+                        tooMany = true;
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Starts again from the beginning of the file.
+         */
+        void reset() {
+            seen.clear();
+            a.size = 0;
+            t = 0;
+            length = 0L;
+            tooMany = false;
+        }
+
+        /**
+         * Wraps the stream, so that the bytes read from it are collected.
+         * The bytes skipped are not, so the trigrams are incomplete then.
+         * @param is the stream
+         * @return the wrapped stream
+         */
+        InputStream wrap(InputStream is) {
+            return new FilterInputStream(is) {
+                @Override
+                public int read() throws IOException {
+                    final int b = super.read();
+                    if (b >= 0)
+                        update(new byte[] { (byte) b }, 0, 1);
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    final int n = super.read(b, off, len);
+                    if (n > 0)
+                        update(b, off, n);
+                    return n;
+                }
+            };
+        }
+
+        boolean isComplete() {
+            return length == size;
+        }
+
+        int[] toArray() {
+            return tooMany ? null : Arrays.copyOf(a.a, a.size);
+        }
+    }
+
+    private static final class FileState {
+        final String key; // the absolute path
+        final long size;
+        final long mtime;
+
+        FileState(String key, long size, long mtime) {
+            this.key = key;
+            this.size = size;
+            this.mtime = mtime;
+        }
+    }
+
+    private static final class IntList {
+        int[] a = new int[4];
+        int size;
+
+        void add(int x) {
+            if (size == a.length)
+                a = Arrays.copyOf(a, size * 2);
+            a[size++] = x;
+        }
+    }
+
+}
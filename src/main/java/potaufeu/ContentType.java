@@ -0,0 +1,108 @@
+package potaufeu;
+
+import static potaufeu.Messages.message;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * The types of file contents, detected by the magic numbers in the header.
+ * A signature is a list of the bytes at offsets, and the types are tested in this order.
+ */
+enum ContentType {
+
+    IMAGE(
+        "0:89504E470D0A1A0A", // PNG
+        "0:FFD8FF", // JPEG
+        "0:474946383761", "0:474946383961", // GIF
+        "0:52494646,8:57454250", // WebP
+        "0:49492A00", "0:4D4D002A", // TIFF
+        "0:424D,6:00000000"), // BMP
+    ARCHIVE(
+        "0:504B0304", "0:504B0506", "0:504B0708", // ZIP
+        "0:1F8B08", // gzip
+        "0:425A68", // bzip2
+        "0:FD377A585A00", // xz
+        "0:377ABCAF271C", // 7z
+        "0:28B52FFD", // zstd
+        "0:526172211A07", // RAR
+        "0:213C617263683E0A", // ar
+        "257:7573746172"), // tar
+    ELF(
+        "0:7F454C46"),
+    PDF(
+        "0:255044462D");
+
+    private static final ContentType[] TYPES = values();
+
+    private final int[][] offsets;
+    private final byte[][][] bytes;
+
+    private ContentType(String... signatures) {
+        this.offsets = new int[signatures.length][];
+        this.bytes = new byte[signatures.length][][];
+        for (int i = 0; i < signatures.length; i++) {
+            String[] parts = signatures[i].split(",");
+            offsets[i] = new int[parts.length];
+            bytes[i] = new byte[parts.length][];
+            for (int j = 0; j < parts.length; j++) {
+                final int colon = parts[j].indexOf(':');
+                offsets[i][j] = Integer.parseInt(parts[j].substring(0, colon));
+                final String hex = parts[j].substring(colon + 1);
+                bytes[i][j] = new byte[hex.length() / 2];
+                for (int k = 0; k < bytes[i][j].length; k++)
+                    bytes[i][j][k] = (byte) Integer.parseInt(hex.substring(k * 2, k * 2 + 2), 16);
+            }
+        }
+    }
+
+    /**
+     * Detects the type of the content.
+     * @param header the bytes from the position to the limit, the first 512 bytes at least unless the file is shorter
+     * @return the type, or null if unknown
+     */
+    static ContentType detect(ByteBuffer header) {
+        for (ContentType type : TYPES)
+            if (type.matches(header))
+                return type;
+        return null;
+    }
+
+    private boolean matches(ByteBuffer header) {
+        for (int i = 0; i < offsets.length; i++)
+            if (matches(header, offsets[i], bytes[i]))
+                return true;
+        return false;
+    }
+
+    private static boolean matches(ByteBuffer header, int[] offsets, byte[][] bytes) {
+        final int start = header.position();
+        for (int j = 0; j < offsets.length; j++) {
+            if (offsets[j] + bytes[j].length > header.remaining())
+                return false;
+            for (int k = 0; k < bytes[j].length; k++)
+                if (header.get(start + offsets[j] + k) != bytes[j][k])
+                    return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses the names of the types.
+     * @param names the names separated by commas, case-insensitive
+     * @return the types
+     * @throws IllegalArgumentException if unknown
+     */
+    static Set<ContentType> parse(List<String> names) {
+        Set<ContentType> a = EnumSet.noneOf(ContentType.class);
+        for (String s : names)
+            for (String name : s.split(","))
+                try {
+                    a.add(valueOf(name.trim().toUpperCase(Locale.ROOT)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException(message("e.unknownContentType", name,
+                        Arrays.toString(values()).toLowerCase(Locale.ROOT)));
+                }
+        return a;
+    }
+
+}
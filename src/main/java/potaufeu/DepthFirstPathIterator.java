@@ -0,0 +1,130 @@
+package potaufeu;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * An iterator which walks a directory tree in depth-first order.
+ * It keeps a stack of open directory cursors, one for each level, and resumes the cursor on the top.
+ * So the memory usage is bounded by the depth of the tree, not by its width
+ * nor by the number of entries in a directory,
+ * and the first entry is returned before any directory is listed.
+ * The stream of this iterator is always sequential, because the cursors cannot be split.
+ */
+final class DepthFirstPathIterator implements Iterator<PathEntry>, Closeable {
+
+    private final PathEntry root;
+    private final TraversalOptions options;
+    private final Deque<Cursor> stack;
+
+    private PathEntry next;
+    private int nextDepth; // from the root
+    private Path dirToOpen;
+    private int dirToOpenDepth;
+
+    DepthFirstPathIterator(Path root, TraversalOptions options) {
+        this.root = new PathEntry(root);
+        this.options = options;
+        this.stack = new ArrayDeque<>();
+        this.next = this.root;
+    }
+
+    static Stream<PathEntry> entries(Path root, TraversalOptions options) {
+        DepthFirstPathIterator it = new DepthFirstPathIterator(root, options);
+        Spliterator<PathEntry> spliterator =
+            Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(it::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            advance();
+        return next != null;
+    }
+
+    @Override
+    public PathEntry next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        final PathEntry entry = next;
+        next = null;
+        // opens the directory when the next entry is required
+        if (options.descends(root, entry, nextDepth)) {
+            dirToOpen = entry.getPath();
+            dirToOpenDepth = nextDepth;
+        }
+        return entry;
+    }
+
+    private void advance() {
+        if (dirToOpen != null) {
+            open(dirToOpen, dirToOpenDepth);
+            dirToOpen = null;
+        }
+        while (!stack.isEmpty()) {
+            final Cursor cursor = stack.peek();
+            final Path x;
+            try {
+                if (!cursor.iterator.hasNext()) {
+                    stack.pop().close();
+                    continue;
+                }
+                x = cursor.iterator.next();
+            } catch (DirectoryIteratorException e) {
+                stack.pop().close();
+                PathIterator.err(e.getCause(), cursor.dir, options.ignoreAccessDenied);
+                continue;
+            }
+            final PathEntry entry = new PathEntry(x);
+            if (!options.skips(cursor.dir, entry)) {
+                next = entry;
+                nextDepth = cursor.depth + 1;
+                return;
+            }
+        }
+    }
+
+    private void open(Path dir, int depth) {
+        if (options.exclusiveFilter.matches(dir))
+            return;
+        if (options.ignoreFiles != null)
+            options.ignoreFiles.load(dir);
+        try {
+            stack.push(new Cursor(dir, depth, Files.newDirectoryStream(dir)));
+        } catch (IOException e) {
+            PathIterator.err(e, dir, options.ignoreAccessDenied);
+        }
+    }
+
+    @Override
+    public void close() {
+        while (!stack.isEmpty())
+            stack.pop().close();
+    }
+
+    private static final class Cursor {
+        final Path dir;
+        final int depth; // from the root
+        final DirectoryStream<Path> stream;
+        final Iterator<Path> iterator;
+
+        Cursor(Path dir, int depth, DirectoryStream<Path> stream) {
+            this.dir = dir;
+            this.depth = depth;
+            this.stream = stream;
+            this.iterator = stream.iterator();
+        }
+
+        void close() {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -0,0 +1,159 @@
+package potaufeu;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Finds the groups of regular files which have the same contents.
+ *
+ * <p>The files are grouped by size first, and only the groups with two or more files are read.
+ * Then they are grouped by the hash of their first and last blocks, which covers the whole file if it is small,
+ * and the rest are grouped by the hash of the whole contents, read through memory mapping.
+ * The files are hashed on the I/O executor if available, or by the parallel stream on the pool of the run
+ * if the entries are parallel, or one by one otherwise.
+ * The hard links of a file are not duplicates, so only the first path of each file (by its file key) is used.
+ * Empty files are ignored.</p>
+ */
+final class DuplicateFinder {
+
+    private static final Log log = Log.logger(DuplicateFinder.class);
+
+    static final int BLOCK_SIZE = 4096;
+    static final long MAP_SIZE = 64L << 20;
+
+    private DuplicateFinder() {
+    }
+
+    /**
+     * Returns the groups of duplicates.
+     * @param stream the entries
+     * @param io the I/O executor, or null
+     * @return the groups of two or more entries, in the order of their first entries in the stream
+     */
+    static List<List<PathEntry>> find(Stream<PathEntry> stream, ExecutorService io) {
+        final boolean parallel = stream.isParallel();
+        Map<Long, List<PathEntry>> bySize = new ConcurrentHashMap<>();
+        Map<PathEntry, Integer> order = new ConcurrentHashMap<>();
+        // the attributes are read in parallel, and the action is run one by one in the order of the stream
+        stream.filter(entry -> entry.isRegularFile() && entry.size() > 0L).forEachOrdered(entry -> {
+            bySize.computeIfAbsent(entry.size(), x -> new ArrayList<>()).add(entry);
+            order.put(entry, order.size());
+        });
+        List<List<PathEntry>> groups = new ArrayList<>();
+        for (List<PathEntry> sameSize : bySize.values()) {
+            if (sameSize.size() < 2)
+                continue;
+            Set<Object> fileKeys = new HashSet<>();
+            sameSize.removeIf(entry -> {
+                final Object fileKey = entry.attributes().fileKey();
+                return fileKey != null && !fileKeys.add(fileKey);
+            });
+            if (sameSize.size() < 2)
+                continue;
+            final long size = sameSize.get(0).size();
+            for (List<PathEntry> samePartialHash : groupBy(sameSize, DuplicateFinder::partialHash, io, parallel))
+                if (size <= BLOCK_SIZE * 2)
+                    groups.add(samePartialHash); // the whole contents have been hashed
+                else
+                    groups.addAll(groupBy(samePartialHash, DuplicateFinder::fullHash, io, parallel));
+        }
+        groups.sort(Comparator.comparingInt(a -> order.get(a.get(0))));
+        return groups;
+    }
+
+    /*
+     * Groups the entries by the keys.
+     * The entries which cannot be read are removed, and the groups of one entry are dropped.
+     */
+    private static List<List<PathEntry>> groupBy(List<PathEntry> entries, Function<PathEntry, ByteBuffer> f,
+            ExecutorService io, boolean parallel) {
+        final List<ByteBuffer> keys;
+        if (io != null) {
+            List<Future<ByteBuffer>> futures = new ArrayList<>();
+            for (PathEntry entry : entries)
+                futures.add(io.submit(() -> f.apply(entry)));
+            keys = new ArrayList<>();
+            for (Future<ByteBuffer> future : futures)
+                keys.add(await(future));
+        }
+        else
+            keys = (parallel ? entries.parallelStream() : entries.stream()).map(f).collect(Collectors.toList());
+        Map<ByteBuffer, List<PathEntry>> m = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size(); i++)
+            if (keys.get(i) != null)
+                m.computeIfAbsent(keys.get(i), x -> new ArrayList<>()).add(entries.get(i));
+        return m.values().stream().filter(a -> a.size() > 1).collect(Collectors.toList());
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static ByteBuffer partialHash(PathEntry entry) {
+        final Path path = entry.getPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            MessageDigest md = messageDigest();
+            ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+            update(md, channel, buffer, 0L, size);
+            if (size > BLOCK_SIZE)
+                update(md, channel, buffer, Math.max(BLOCK_SIZE, size - BLOCK_SIZE), size);
+            return ByteBuffer.wrap(md.digest());
+        } catch (IOException e) {
+            PathIterator.err(e, path, false);
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest md, FileChannel channel, ByteBuffer buffer, long position, long size)
+            throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.min(BLOCK_SIZE, size - position));
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                break; // truncated
+        buffer.flip();
+        md.update(buffer);
+    }
+
+    private static ByteBuffer fullHash(PathEntry entry) {
+        final Path path = entry.getPath();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            MessageDigest md = messageDigest();
+            for (long position = 0L; position < size; position += MAP_SIZE)
+                md.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_SIZE, size - position)));
+            return ByteBuffer.wrap(md.digest());
+        } catch (IOException e) {
+            PathIterator.err(e, path, false);
+            return null;
+        }
+    }
+
+    private static MessageDigest messageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every JRE has SHA-256
+            log.error(() -> "SHA-256", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package potaufeu;
+
+import java.nio.file.*;
+
+/**
+ * A path matcher which uses the attributes held by PathEntry,
+ * so that the attributes are not read again for each matcher.
+ */
+@FunctionalInterface
+public interface EntryMatcher extends PathMatcher {
+
+    boolean matches(PathEntry entry);
+
+    @Override
+    default boolean matches(Path path) {
+        return matches(new PathEntry(path));
+    }
+
+    /**
+     * Returns whether an entry below the directory can match.
+     * The walker does not list the directories for which this returns false.
+     * @param dir the directory
+     * @return false if no entry below the directory matches, otherwise true
+     */
+    default boolean mayMatchBelow(Path dir) {
+        return true;
+    }
+
+    /**
+     * Returns the cost class of this matcher.
+     * The matchers which use the attributes share the attributes read by one of them.
+     * @return the cost class
+     */
+    default Cost cost() {
+        return Cost.ATTRIBUTES;
+    }
+
+    static EntryMatcher of(PathMatcher matcher, Cost cost) {
+        final EntryMatcher m = of(matcher);
+        return new EntryMatcher() {
+            @Override
+            public boolean matches(PathEntry entry) {
+                return m.matches(entry);
+            }
+
+            @Override
+            public boolean mayMatchBelow(Path dir) {
+                return m.mayMatchBelow(dir);
+            }
+
+            @Override
+            public Cost cost() {
+                return cost;
+            }
+        };
+    }
+
+    static EntryMatcher of(PathMatcher matcher) {
+        if (matcher instanceof EntryMatcher)
+            return (EntryMatcher) matcher;
+        return entry -> matcher.matches(entry.getPath());
+    }
+
+    /**
+     * The cost classes of matchers, with their relative costs.
+     */
+    enum Cost {
+        /** uses only the path */
+        PATH(1),
+        /** reads the attributes */
+        ATTRIBUTES(10),
+        /** reads the content */
+        CONTENT(1000);
+
+        final int weight;
+
+        private Cost(int weight) {
+            this.weight = weight;
+        }
+    }
+
+}
@@ -13,6 +13,7 @@ public final class FileAttributeFormatter {
 
     private static volatile boolean unixViewNotAvailableChecked = false;
 
+    private final PathEntry entry;
     private final Path path;
     private final BasicFileAttributes attr;
 
@@ -24,8 +25,19 @@ public final class FileAttributeFormatter {
     }
 
     public FileAttributeFormatter(Path path, BasicFileAttributes attributes) {
-        this.path = path;
-        this.attr = attributes;
+        this(new PathEntry(path, attributes));
+    }
+
+    /**
+     * A constructor.
+     * The attributes are taken from the entry and not read again.
+     * @param entry the entry
+     * @throws UncheckedIOException if the attributes cannot be read
+     */
+    public FileAttributeFormatter(PathEntry entry) {
+        this.entry = entry;
+        this.path = entry.getPath();
+        this.attr = entry.attributes();
         this.fileSizeFormatter = String::valueOf;
         this.fileTimeFormatter = String::valueOf;
     }
@@ -75,7 +87,7 @@ public final class FileAttributeFormatter {
     }
 
     public long size() {
-        return size(path);
+        return attr.size();
     }
 
     public static long size(File file) {
@@ -123,7 +135,7 @@ public final class FileAttributeFormatter {
     }
 
     public char entryType() {
-        return getEntryType(path);
+        return entry.entryType();
     }
 
     public static char entryType(Path path) {
@@ -284,15 +296,19 @@ public final class FileAttributeFormatter {
 
     static BasicFileAttributes readBasicAttributes(Path path) {
         try {
-            try {
-                return Files.readAttributes(path, PosixFileAttributes.class);
-            } catch (UnsupportedOperationException e) {
-                // ignore
-            }
-            return Files.readAttributes(path, BasicFileAttributes.class);
+            return readAttributes(path);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    static BasicFileAttributes readAttributes(Path path, LinkOption... options) throws IOException {
+        try {
+            return Files.readAttributes(path, PosixFileAttributes.class, options);
+        } catch (UnsupportedOperationException e) {
+            // ignore
+        }
+        return Files.readAttributes(path, BasicFileAttributes.class, options);
+    }
+
 }
@@ -27,12 +27,12 @@ public final class FileAttributePrinter {
 
     public TerminalOperation path() {
         final String fmt = "%s" + eol;
-        return x -> out.printf(fmt, path2s.apply(x));
+        return x -> out.printf(fmt, path2s.apply(x.getPath()));
     }
 
     public TerminalOperation fullPath() {
         final String fmt = "%s" + eol;
-        return x -> out.printf(fmt, path2s.apply(x.toAbsolutePath()));
+        return x -> out.printf(fmt, path2s.apply(x.getPath().toAbsolutePath()));
     }
 
     public TerminalOperation list() {
@@ -41,7 +41,7 @@ public final class FileAttributePrinter {
             FileAttributeFormatter u = new FileAttributeFormatter(x);
             u.setFileSizeFormatter(sz -> formatFileSize(sz));
             u.setFileTimeFormatter(ft -> formatFileTime(ft));
-            out.printf(fmt, u.entryType(), u.formattedSize(), u.formattedMtime(), path2s.apply(x));
+            out.printf(fmt, u.entryType(), u.formattedSize(), u.formattedMtime(), path2s.apply(x.getPath()));
         };
     }
 
@@ -52,7 +52,7 @@ public final class FileAttributePrinter {
             u.setFileSizeFormatter(sz -> formatFileSize(sz));
             u.setFileTimeFormatter(ft -> formatFileTime(ft));
             out.printf(fmt, u.entryType(), u.formattedSize(), u.formattedCtime(), u.formattedMtime(),
-                u.formattedAtime(), path2s.apply(x));
+                u.formattedAtime(), path2s.apply(x.getPath()));
         };
     }
 
@@ -70,10 +70,10 @@ public final class FileAttributePrinter {
             final String size = u.formattedSize();
             final String mtime = u.formattedMtime();
             StringBuilder sbPath = new StringBuilder();
-            sbPath.append(path2s.apply(x));
+            sbPath.append(path2s.apply(x.getPath()));
             if (type == 'l')
                 try {
-                    Path symlink = Files.readSymbolicLink(x);
+                    Path symlink = Files.readSymbolicLink(x.getPath());
                     sbPath.append(" -> ").append(path2s.apply(symlink));
                 } catch (IOException e) {
                     log.warn(() -> "", e);
@@ -86,22 +86,23 @@ public final class FileAttributePrinter {
         return linesCountList(Collections.emptyMap());
     }
 
-    public TerminalOperation linesCountList(Map<Path, List<FileLine>> grepped) {
+    public TerminalOperation linesCountList(Map<Path, GrepResult> grepped) {
         final String fmt = "%9s lines %9s bytes %s" + eol;
         return x -> {
+            final Path path = x.getPath();
             long lineCount = -1;
             try {
-                if (grepped.containsKey(x))
-                    lineCount = grepped.get(x).size();
+                if (grepped.containsKey(path))
+                    lineCount = grepped.get(path).count;
                 else
-                    lineCount = Files.lines(x).count();
+                    lineCount = Files.lines(path).count();
             } catch (IOException e) {
                 log.warn(() -> "in linesCountList: " + e);
             }
-            long fileSize = FileAttributeFormatter.size(x);
+            long fileSize = x.size();
             String formattedLineCount = (lineCount == -1) ? "?" : String.format("%,12d", lineCount);
             String formattedFileSize = (fileSize == -1) ? "?" : formatFileSize(fileSize);
-            out.printf(fmt, formattedLineCount, formattedFileSize, path2s.apply(x));
+            out.printf(fmt, formattedLineCount, formattedFileSize, path2s.apply(path));
         };
     }
 
@@ -110,7 +111,7 @@ public final class FileAttributePrinter {
             List<String> a = new ArrayList<>();
             FileAttributeFormatter u = new FileAttributeFormatter(x);
             u.setFileTimeFormatter(ft -> formatFileTime(ft));
-            Collections.addAll(a, path2s.apply(x));
+            Collections.addAll(a, path2s.apply(x.getPath()));
             Collections.addAll(a, String.valueOf(u.entryType()), String.format("%s%s", u.nLink(), u.aclSign()).trim());
             Collections.addAll(a, u.formattedPermissions().split(""));
             Collections.addAll(a, u.getUserPrincipalName(), u.getGroupPrincipalName());
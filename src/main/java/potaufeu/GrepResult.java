@@ -0,0 +1,36 @@
+package potaufeu;
+
+import java.util.*;
+
+/**
+ * The result of a grep of a file: the number of the matched lines, and the lines if they are kept.
+ */
+public final class GrepResult {
+
+    public final int count;
+    public final List<FileLine> lines; // empty unless kept
+
+    private GrepResult(int count, List<FileLine> lines) {
+        this.count = count;
+        this.lines = lines;
+    }
+
+    /**
+     * Returns the result which has the matched lines.
+     * @param lines the lines
+     * @return the result
+     */
+    static GrepResult of(List<FileLine> lines) {
+        return new GrepResult(lines.size(), lines);
+    }
+
+    /**
+     * Returns the result which has only the number of the matched lines.
+     * @param count the number of the lines
+     * @return the result
+     */
+    static GrepResult counted(int count) {
+        return new GrepResult(count, Collections.emptyList());
+    }
+
+}
@@ -0,0 +1,174 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.*;
+
+/**
+ * The rules of ignore files (<code>.gitignore</code> and <code>.potfignore</code>) in walked directories.
+ * The files in a directory are read and compiled once, when the directory is listed,
+ * and apply to all entries below the directory.
+ * The rules in a deeper directory take precedence, and the last matching rule in a file wins,
+ * as in git. The <code>.git</code> directories are always ignored.
+ * The ignore files above the walk roots are not read.
+ */
+final class IgnoreFiles {
+
+    static final List<String> FILE_NAMES = Arrays.asList(".gitignore", ".potfignore");
+
+    private final Map<Path, List<Rule>> rulesByDir; // only the directories which have rules
+
+    IgnoreFiles() {
+        this.rulesByDir = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Reads the ignore files in the directory.
+     * This must be called before the entries of the directory are tested.
+     * @param dir the directory
+     */
+    void load(Path dir) {
+        List<Rule> rules = new ArrayList<>();
+        for (String fileName : FILE_NAMES)
+            try {
+                String content = new String(Files.readAllBytes(dir.resolve(fileName)), UTF_8);
+                for (String line : content.split("\r?\n"))
+                    Rule.parse(line).ifPresent(rules::add);
+            } catch (NoSuchFileException e) {
+                // ignore
+            } catch (IOException e) {
+                PathIterator.err(e, dir.resolve(fileName), true);
+            }
+        if (!rules.isEmpty())
+            rulesByDir.put(dir, rules);
+    }
+
+    /**
+     * Tests whether the entry is ignored.
+     * @param dir the directory which contains the entry
+     * @param entry the entry
+     * @return true if ignored
+     */
+    boolean ignores(Path dir, PathEntry entry) {
+        final String name = entry.name();
+        if (name.equals(".git"))
+            return true;
+        if (rulesByDir.isEmpty())
+            return false;
+        final String path = entry.getPath().toString();
+        for (Path p = dir; p != null; p = parentOf(p)) {
+            List<Rule> rules = rulesByDir.get(p);
+            if (rules == null)
+                continue;
+            final String base = p.toString();
+            final int start = (base.isEmpty() || base.endsWith(File.separator)) ? base.length() : base.length() + 1;
+            final String relativePath = path.substring(start).replace(File.separatorChar, '/');
+            for (int i = rules.size() - 1; i >= 0; i--) {
+                final Rule rule = rules.get(i);
+                if (rule.matches(relativePath, name, entry))
+                    return !rule.negative;
+            }
+        }
+        return false;
+    }
+
+    private static Path parentOf(Path p) {
+        Path parent = p.getParent();
+        if (parent == null && !p.isAbsolute() && !p.toString().isEmpty())
+            return Paths.get(""); // the current directory as a root
+        return parent;
+    }
+
+    static final class Rule {
+
+        final Pattern pattern;
+        final boolean negative;
+        final boolean directoryOnly;
+        final boolean matchesPath; // false: matches the name
+
+        Rule(Pattern pattern, boolean negative, boolean directoryOnly, boolean matchesPath) {
+            this.pattern = pattern;
+            this.negative = negative;
+            this.directoryOnly = directoryOnly;
+            this.matchesPath = matchesPath;
+        }
+
+        static Optional<Rule> parse(String line) {
+            String s = line.replaceAll("(?<!\\\\)\\s+$", "");
+            if (s.isEmpty() || s.startsWith("#"))
+                return Optional.empty();
+            final boolean negative = s.startsWith("!");
+            if (negative)
+                s = s.substring(1);
+            final boolean directoryOnly = s.endsWith("/");
+            if (directoryOnly)
+                s = s.substring(0, s.length() - 1);
+            // a pattern which has a slash is relative to the directory of the file
+            final boolean matchesPath = s.contains("/");
+            if (s.startsWith("/"))
+                s = s.substring(1);
+            if (s.isEmpty())
+                return Optional.empty();
+            return Optional.of(new Rule(Pattern.compile(toRegex(s)), negative, directoryOnly, matchesPath));
+        }
+
+        boolean matches(String relativePath, String name, PathEntry entry) {
+            if (!pattern.matcher(matchesPath ? relativePath : name).matches())
+                return false;
+            return !directoryOnly || entry.isDirectory();
+        }
+
+        static String toRegex(String glob) {
+            StringBuilder sb = new StringBuilder();
+            final int n = glob.length();
+            for (int i = 0; i < n; i++) {
+                final char c = glob.charAt(i);
+                switch (c) {
+                    case '*':
+                        if (i + 1 < n && glob.charAt(i + 1) == '*') {
+                            i++;
+                            if (i + 1 < n && glob.charAt(i + 1) == '/') {
+                                i++;
+                                sb.append("(?:.*/)?"); // "**/": any leading directories
+                            }
+                            else
+                                sb.append(".*");
+                        }
+                        else
+                            sb.append("[^/]*");
+                        break;
+                    case '?':
+                        sb.append("[^/]");
+                        break;
+                    case '[': {
+                        final int end = glob.indexOf(']', i + 2);
+                        if (end < 0) {
+                            sb.append("\\[");
+                            break;
+                        }
+                        String set = glob.substring(i + 1, end).replace("\\", "\\\\");
+                        if (set.startsWith("!"))
+                            set = "^" + set.substring(1);
+                        sb.append('[').append(set.replace("[", "\\[")).append(']');
+                        i = end;
+                        break;
+                    }
+                    case '\\':
+                        if (i + 1 < n)
+                            sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                        break;
+                    default:
+                        if (".()+^$|{}".indexOf(c) >= 0)
+                            sb.append('\\');
+                        sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+    }
+
+}
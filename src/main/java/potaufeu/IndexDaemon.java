@@ -0,0 +1,300 @@
+package potaufeu;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+import static potaufeu.Messages.message;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Keeps the index of a root in memory, and applies the changes notified by the watch service.
+ * The index is written to the file shortly after the changes settle and on exit, so that searches read a fresh one.
+ * Under continuous changes, it is still written at a fixed interval.
+ *
+ * <p>The records are held in a sorted map in the order of the index file.
+ * An event in a directory updates the entry and the directory itself;
+ * a new directory is walked and watched, and a removed one is dropped with its subtree.
+ * A directory which is not watched keeps its indexed mtime on the events of its parent,
+ * so that searches still find it changed and list it again.
+ * When the events overflow or an ignore file is changed, the whole tree is walked again.
+ * The directories which cannot be watched (e.g. over the limit of the system)
+ * are still refreshed by searches, by comparing their mtime.</p>
+ */
+final class IndexDaemon implements Runnable {
+
+    private static final Log log = Log.logger(IndexDaemon.class);
+
+    static final long CHECKPOINT_DELAY = Long.getLong("potaufeu.index.checkpointDelay", 1_000L); // millis
+    static final long CHECKPOINT_INTERVAL = Long.getLong("potaufeu.index.checkpoint", 60L) * 1_000L;
+
+    private final Path root; // real path
+    private final Supplier<TraversalOptions> optionsSupplier;
+    private final NavigableMap<String, PathIndex.Record> records;
+    private final Map<Path, WatchKey> keys;
+
+    private TraversalOptions options;
+    private PathEntry rootEntry;
+    private WatchService watcher;
+    private boolean dirty;
+    private long firstChangeTime; // since the last checkpoint
+    private long lastChangeTime;
+    private boolean watchLimitReached;
+
+    /**
+     * @param root the root directory
+     * @param optionsSupplier creates the options for each walk of the whole tree
+     * @throws IOException if the root does not exist
+     */
+    IndexDaemon(Path root, Supplier<TraversalOptions> optionsSupplier) throws IOException {
+        this.root = root.toRealPath();
+        this.optionsSupplier = optionsSupplier;
+        this.records = new TreeMap<>(PathIndex.PATH_ORDER);
+        this.keys = new HashMap<>();
+    }
+
+    Path getRoot() {
+        return root;
+    }
+
+    synchronized int size() {
+        return records.size();
+    }
+
+    /**
+     * Refreshes the index file, loads it and starts watching.
+     * @throws IOException
+     */
+    synchronized void start() throws IOException {
+        watcher = root.getFileSystem().newWatchService();
+        PathIndex.update(root, optionsSupplier.get());
+        load();
+    }
+
+    /**
+     * Applies the events until interrupted.
+     * The index file is written when no event has come for the delay after a change,
+     * or when the interval has passed since the first change.
+     */
+    @Override
+    public void run() {
+        try (WatchService watcher = this.watcher) {
+            for (;;) {
+                final long due = checkpointTime();
+                final WatchKey key = (due == Long.MAX_VALUE) ? watcher.take()
+                        : watcher.poll(Math.max(0L, due - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                synchronized (this) {
+                    if (key != null)
+                        apply(key);
+                    if (dirty && System.currentTimeMillis() >= checkpointTime())
+                        checkpoint();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.info(() -> "daemon stopped: " + root);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized long checkpointTime() {
+        if (!dirty)
+            return Long.MAX_VALUE;
+        return Math.min(lastChangeTime + CHECKPOINT_DELAY, firstChangeTime + CHECKPOINT_INTERVAL);
+    }
+
+    private void changed() {
+        final long now = System.currentTimeMillis();
+        if (!dirty)
+            firstChangeTime = now;
+        lastChangeTime = now;
+        dirty = true;
+    }
+
+    /**
+     * Writes the index file, if changed.
+     * @throws IOException
+     */
+    synchronized void checkpoint() throws IOException {
+        final Iterator<PathIndex.Record> it = records.values().iterator();
+        final long count = PathIndex.save(root, PathIndex.flags(options), () -> it.hasNext() ? it.next() : null);
+        dirty = false;
+        log.info(() -> String.format("checkpoint: %s, %d entries", root, count));
+    }
+
+    synchronized void checkpointIfDirty() {
+        if (dirty)
+            try {
+                checkpoint();
+            } catch (IOException e) {
+                log.warn(() -> "checkpoint: " + root, e);
+            }
+    }
+
+    /*
+     * Reads the index file written just before, and watches its directories.
+     */
+    private void load() throws IOException {
+        options = optionsSupplier.get();
+        rootEntry = new PathEntry(root);
+        try (PathIndex.Reader reader = new PathIndex.Reader(PathIndex.indexFile(root))) {
+            for (PathIndex.Record r; (r = reader.next()) != null;) {
+                records.put(r.relativePath, r);
+                if (r.isDirectory())
+                    try {
+                        final Path dir = r.path(root);
+                        if (options.descends(rootEntry, new PathEntry(dir), r.depth))
+                            watch(dir);
+                    } catch (InvalidPathException e) {
+                        // not representable; searches list it every time
+                    }
+            }
+        }
+    }
+
+    private void reload() throws IOException {
+        log.info(() -> "reload: " + root);
+        for (WatchKey key : keys.values())
+            key.cancel();
+        keys.clear();
+        records.clear();
+        options = optionsSupplier.get();
+        rootEntry = new PathEntry(root);
+        add("", rootEntry, 0, false);
+        changed();
+    }
+
+    private void watch(Path dir) {
+        if (options.ignoreFiles != null)
+            options.ignoreFiles.load(dir);
+        try {
+            keys.put(dir, dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY));
+        } catch (NoSuchFileException e) {
+            // removed; the event of the parent will follow
+        } catch (IOException e) {
+            if (!watchLimitReached) {
+                watchLimitReached = true;
+                System.err.println(message("w.cannotWatch", dir, e.getMessage()));
+            }
+            log.debug(() -> "cannot watch: " + dir + ": " + e);
+        }
+    }
+
+    private void apply(WatchKey key) throws IOException {
+        final Path dir = (Path) key.watchable();
+        final String dirPath = relativize(dir);
+        PathIndex.Record dirRecord = records.get(dirPath);
+        if (dirRecord == null || !dirRecord.isDirectory()) {
+            // moved away or replaced
+            key.cancel();
+            keys.remove(dir);
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                reload();
+                break;
+            }
+            final Path path = dir.resolve((Path) event.context());
+            if (options.ignoreFiles != null && IgnoreFiles.FILE_NAMES.contains(path.getFileName().toString())) {
+                reload();
+                break;
+            }
+            log.debug(() -> event.kind().name() + ": " + path);
+            final String relativePath = relativize(path);
+            final PathEntry entry = new PathEntry(path);
+            final PathIndex.Record r = records.get(relativePath);
+            if (event.kind() == ENTRY_DELETE || !entry.exists() || options.skips(dir, entry))
+                remove(relativePath, path);
+            else if (event.kind() == ENTRY_CREATE || r == null || r.isDirectory() != entry.isDirectory()) {
+                remove(relativePath, path); // replaced
+                add(relativePath, entry, dirRecord.depth + 1, lossy(dir));
+            }
+            else if (!r.isDirectory() || keys.containsKey(path))
+                records.put(relativePath, record(relativePath, r.depth, entry, r.isRelisted()));
+            final boolean relisted = dirRecord.isRelisted() || !PathIndex.roundTrips(entry);
+            dirRecord = record(dirPath, dirRecord.depth, new PathEntry(dir), relisted);
+            records.put(dirPath, dirRecord);
+            changed();
+        }
+        if (!key.reset()) {
+            remove(dirPath, dir);
+            changed();
+        }
+    }
+
+    /*
+     * Adds the entry, and walks it if it is a directory.
+     */
+    private void add(String relativePath, PathEntry entry, int depth, boolean parentLossy) {
+        final boolean descends = descends(entry, depth);
+        final List<PathEntry> entries = new ArrayList<>();
+        if (descends) {
+            watch(entry.getPath());
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(entry.getPath())) {
+                for (Path x : stream) {
+                    PathEntry child = new PathEntry(x);
+                    if (!options.skips(entry.getPath(), child))
+                        entries.add(child);
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                PathIterator.err(e, entry.getPath(), options.ignoreAccessDenied);
+            }
+        }
+        // the same rule as the refresh of the index
+        final boolean lossy = parentLossy || !PathIndex.roundTrips(entry);
+        final boolean relisted = lossy || entries.stream().anyMatch(x -> !PathIndex.roundTrips(x));
+        records.put(relativePath, record(relativePath, depth, entry, relisted && descends));
+        for (PathEntry child : entries) {
+            final String name = child.name();
+            add(relativePath.isEmpty() ? name : relativePath + File.separator + name, child, depth + 1, lossy);
+        }
+    }
+
+    private boolean descends(PathEntry entry, int depth) {
+        if (!options.mayDescend(rootEntry, entry, depth))
+            return false;
+        // a directory moved within the tree has been visited by the old name
+        return options.visited == null || options.visited.add(entry) || !entry.isSymbolicLink();
+    }
+
+    /*
+     * Removes the entry and its subtree.
+     */
+    private void remove(String relativePath, Path path) {
+        if (records.remove(relativePath) == null)
+            return;
+        final String prefix = relativePath + File.separator;
+        for (Iterator<String> it = records.tailMap(prefix, true).keySet().iterator(); it.hasNext();) {
+            if (!it.next().startsWith(prefix))
+                break;
+            it.remove();
+        }
+        for (Iterator<Map.Entry<Path, WatchKey>> it = keys.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<Path, WatchKey> x = it.next();
+            if (x.getKey().startsWith(path)) {
+                x.getValue().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    private String relativize(Path path) {
+        return root.relativize(path).toString();
+    }
+
+    private boolean lossy(Path path) {
+        try {
+            return !root.resolve(relativize(path)).equals(path);
+        } catch (InvalidPathException e) {
+            return true;
+        }
+    }
+
+    private static PathIndex.Record record(String relativePath, int depth, PathEntry entry, boolean relisted) {
+        final PathIndex.Record r = PathIndex.Record.of(relativePath, depth, entry).detached();
+        return relisted ? r.relisted() : r;
+    }
+
+}
@@ -0,0 +1,35 @@
+package potaufeu;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Executors for blocking I/O tasks.
+ * This class runs the tasks on platform threads.
+ * On Java 21 or later, the class in <code>META-INF/versions/21</code> of the multi-release jar
+ * replaces this one, and runs them on virtual threads.
+ */
+final class IoExecutors {
+
+    private IoExecutors() {
+    }
+
+    static boolean isVirtual() {
+        return false;
+    }
+
+    /**
+     * Creates an executor which runs at most the specified number of tasks at once.
+     * @param concurrency the maximum number of running tasks
+     * @return the executor
+     */
+    static ExecutorService newExecutor(int concurrency) {
+        AtomicInteger n = new AtomicInteger();
+        return Executors.newFixedThreadPool(concurrency, r -> {
+            Thread th = new Thread(r, "potf-io-" + n.incrementAndGet());
+            th.setDaemon(true);
+            return th;
+        });
+    }
+
+}
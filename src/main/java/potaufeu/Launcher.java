@@ -0,0 +1,177 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * The entry point which passes the command to the server started by <code>--server</code>,
+ * and runs it in this process if no server is available.
+ *
+ * <p>This class only uses the classes of JRE, so that the libraries are not loaded
+ * when the server runs the command.
+ * The command is run in this process if the standard input may have paths, which the server does not read,
+ * if it is the interactive mode, the daemon or the server,
+ * or if the server is running another command.
+ * The server file is named after the working directory and the charset, which the server requires to be the same,
+ * so that the servers of several directories are found without connecting to them.</p>
+ */
+public final class Launcher {
+
+    static final int CONNECT_TIMEOUT = 1_000;
+    static final int READY_TIMEOUT = 1_000;
+
+    private static final List<String> LOCAL_OPTIONS = Arrays.asList("-i", "--interactive", "--daemon", "--server");
+
+    private Launcher() {
+    }
+
+    public static void main(String[] args) {
+        if (!runsLocally(args)) {
+            Optional<Path> file = serverFile(Paths.get("").toAbsolutePath().toString(), Charset.defaultCharset().name());
+            if (file.isPresent())
+                try {
+                    if (request(file.get(), args, System.out, System.err))
+                        return;
+                } catch (IOException e) {
+                    // not running, or stopped; the file may be left by a killed server
+                }
+        }
+        App.main(args);
+    }
+
+    /**
+     * Tests whether the command has to be run in this process.
+     * @param args the arguments
+     * @return true if the server cannot run it
+     */
+    static boolean runsLocally(String[] args) {
+        for (String arg : args)
+            if (LOCAL_OPTIONS.contains(arg))
+                return true;
+        return hasInput();
+    }
+
+    /*
+     * Tests whether the standard input may have paths, without waiting for them,
+     * since a pipe may have nothing written yet when the JVM starts.
+     * On Linux, a pipe, a socket or a file may have paths, and a terminal or the null device has none.
+     * Otherwise, the available bytes are tested as App does.
+     */
+    private static boolean hasInput() {
+        final Path stdin = Paths.get("/proc/self/fd/0");
+        try {
+            final String s = Files.readSymbolicLink(stdin).toString();
+            return s.startsWith("pipe:") || s.startsWith("socket:") || Files.isRegularFile(stdin);
+        } catch (IOException | UnsupportedOperationException e) {
+            try {
+                return System.in.available() > 0;
+            } catch (IOException e2) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Sends the command to the server, and copies its output.
+     * @param file the server file
+     * @param args the arguments
+     * @param out the standard output
+     * @param err the standard error
+     * @return true if the server has run the command, false if it has to be run in this process,
+     *         also if the server is running another command
+     * @throws IOException if the server is not available
+     */
+    static boolean request(Path file, String[] args, OutputStream out, OutputStream err) throws IOException {
+        final List<String> lines;
+        try {
+            lines = Files.readAllLines(file, UTF_8);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        if (lines.size() < 2)
+            return false;
+        final Charset charset = Charset.defaultCharset();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(lines.get(0))),
+                CONNECT_TIMEOUT);
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            // the request is sent after accepted, so that a busy server does not run it later
+            socket.setSoTimeout(READY_TIMEOUT);
+            try {
+                if (dis.readByte() != Server.READY)
+                    return false; // busy
+            } catch (SocketTimeoutException e) {
+                return false; // not responding
+            }
+            socket.setSoTimeout(0);
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            dos.writeUTF(lines.get(1));
+            dos.writeUTF(Paths.get("").toAbsolutePath().toString());
+            dos.writeUTF(charset.name());
+            dos.writeInt(args.length);
+            for (String arg : args)
+                dos.writeUTF(arg);
+            dos.flush();
+            byte[] buffer = new byte[8192];
+            boolean received = false;
+            try {
+                for (;;) {
+                    final int kind = dis.readByte();
+                    if (kind == Server.END)
+                        return dis.readBoolean();
+                    received = true;
+                    OutputStream os = kind == Server.STDERR ? err : out;
+                    for (int n = dis.readInt(); n > 0;) {
+                        final int r = dis.read(buffer, 0, Math.min(n, buffer.length));
+                        if (r < 0)
+                            throw new EOFException();
+                        os.write(buffer, 0, r);
+                        n -= r;
+                    }
+                    os.flush();
+                }
+            } catch (IOException e) {
+                if (!received)
+                    throw e;
+                // the command cannot be run again
+                err.write(String.format("potf: server: %s%n", e).getBytes(charset));
+                return true;
+            }
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the file which has the port and the token of the server.
+     * This is in the working directory of the interactive mode, without loading it.
+     * @param directory the working directory of the commands
+     * @param charset the name of the charset of the commands
+     * @return the file, or empty if the working directory of the interactive mode does not exist
+     */
+    static Optional<Path> serverFile(String directory, String charset) {
+        String homeDir = Optional.ofNullable(System.getProperty("potaufeu.user.home"))
+                .orElseGet(() -> System.getProperty("user.home", ""));
+        if (homeDir.isEmpty())
+            return Optional.empty();
+        Path dir = Paths.get(homeDir, ".potaufeu");
+        return Files.isDirectory(dir) ? Optional.of(dir.resolve(serverFileName(directory, charset)))
+                : Optional.empty();
+    }
+
+    /**
+     * Returns the name of the server file for the working directory and the charset.
+     * A collision only makes the server reject the commands.
+     * @param directory the working directory of the commands
+     * @param charset the name of the charset of the commands
+     * @return the name
+     */
+    static String serverFileName(String directory, String charset) {
+        return String.format("server-%08x", (directory + '\0' + charset).hashCode());
+    }
+
+}
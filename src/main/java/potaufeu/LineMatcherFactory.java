@@ -1,6 +1,7 @@
 package potaufeu;
 
 import java.io.*;
+import java.nio.*;
 import java.nio.charset.*;
 import java.nio.file.*;
 import java.util.*;
@@ -10,10 +11,28 @@ public final class LineMatcherFactory {
 
     private static final Log log = Log.logger(LineMatcherFactory.class);
 
+    static final int SAMPLE_SIZE = TextSniffer.BLOCK_SIZE;
+
+    /**
+     * What the grep keeps for each matched file.
+     */
+    enum Retention {
+        /** the matched lines */
+        LINES,
+        /** the number of the matched lines */
+        COUNT,
+        /** nothing but the match, so that the grep stops at the first matched line */
+        NONE
+    }
+
     private LineMatcherFactory() {
     }
 
-    private static Supplier<List<Charset>> charsetsExceptDefault() {
+    /**
+     * Returns the charsets to try after the default charset.
+     * @return the charsets
+     */
+    static List<Charset> charsetsExceptDefault() {
         List<Charset> a = new ArrayList<>();
         final String k = "potaufeu.appendCharsets";
         String v = Optional.ofNullable(System.getenv(k)).orElseGet(() -> System.getProperty(k, ""));
@@ -28,19 +47,52 @@ public final class LineMatcherFactory {
         a.add(StandardCharsets.ISO_8859_1);
         a.remove(Charset.defaultCharset());
         log.debug(() -> "init charsets: default=" + Charset.defaultCharset() + ", list=" + a);
-        return () -> a;
+        return a;
+    }
+
+    public static Predicate<PathEntry> createGrepFilter(List<String> patterns, Map<Path, GrepResult> grepped) {
+        return createGrepFilter(patterns, grepped, null, Retention.LINES, Integer.MAX_VALUE);
     }
 
-    public static Predicate<Path> createGrepFilter(List<String> patterns, Map<Path, List<FileLine>> grepped) {
+    /**
+     * Creates the grep filter which skips the binary files and the files without the trigrams of the patterns.
+     * @param patterns the patterns
+     * @param grepped the map to put the results of the matched files
+     * @param contentIndex the content index, or null
+     * @param retention what to keep for each file
+     * @param maxCount the maximum number of the matched lines in each file
+     * @return the filter
+     */
+    static Predicate<PathEntry> createGrepFilter(List<String> patterns, Map<Path, GrepResult> grepped,
+                                                 ContentIndex contentIndex, Retention retention, int maxCount) {
+        final boolean keepsLines = retention == Retention.LINES;
+        final int limit = (retention == Retention.NONE) ? 1 : maxCount;
         StringMatchingPredicate matcher = StringMatchingPredicate.create(patterns);
-        return path -> {
+        final ByteGrep byteGrep = ByteGrep.create(patterns, Charset.defaultCharset()).orElse(null);
+        // the charsets are read once for all files
+        List<Charset> charsets = new ArrayList<>(charsetsExceptDefault());
+        charsets.add(0, Charset.defaultCharset());
+        final ContentIndex index;
+        if (contentIndex != null && !isAsciiCompatible()) {
+            log.info(() -> "content index is not used: the charsets are not compatible with ASCII");
+            index = null;
+        }
+        else
+            index = contentIndex;
+        final Predicate<PathEntry> candidates = (index == null) ? x -> true : index.candidates(patterns);
+        return entry -> {
+            final Path path = entry.getPath();
             try {
-                if (Files.isDirectory(path))
+                if (entry.isDirectory() || !candidates.test(entry) || entry.contentKind() == TextSniffer.Kind.BINARY)
                     return false;
-                List<FileLine> fileLines = doGrep(matcher, path);
-                if (fileLines.isEmpty())
+                // a file not indexed yet is indexed from the bytes which the grep reads
+                final ContentIndex.Trigrams trigrams = (index == null) ? null : index.newTrigrams(entry);
+                GrepResult result = doGrep(matcher, byteGrep, charsets, path, limit, keepsLines, trigrams);
+                if (trigrams != null)
+                    index.add(path, trigrams);
+                if (result.count == 0)
                     return false;
-                grepped.put(path, fileLines);
+                grepped.put(path, result);
                 return true;
             } catch (IOException e) {
                 log.warn(() -> "at createGrepFilter, " + e);
@@ -50,33 +102,117 @@ public final class LineMatcherFactory {
         };
     }
 
-    private static List<FileLine> doGrep(StringMatchingPredicate matcher, Path path) throws IOException {
-        try {
-            return grep(matcher, path, Charset.defaultCharset());
-        } catch (IOException e) {
-            log.debug(() -> "at doGrep, charset=default, e=" + e);
-            for (Charset charset : charsetsExceptDefault().get())
+    /**
+     * Tests whether the ASCII characters have the same bytes in all charsets which the grep tries.
+     * @return true if compatible
+     */
+    static boolean isAsciiCompatible() {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 0x20; c < 0x7F; c++)
+            sb.append(c);
+        final byte[] expected = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        List<Charset> charsets = new ArrayList<>(charsetsExceptDefault());
+        charsets.add(Charset.defaultCharset());
+        for (Charset charset : charsets)
+            if (!Arrays.equals(sb.toString().getBytes(charset), expected)
+                || !new String(expected, charset).equals(sb.toString()))
+                return false;
+        return true;
+    }
+
+    /*
+     * Greps the file in the first charset which can decode it.
+     * The charsets which cannot decode the first block are skipped without reading the whole file,
+     * and the file is decoded in a single pass through the block which has been read.
+     * The trigrams of the bytes are collected on the way, if required.
+     */
+    private static GrepResult doGrep(StringMatchingPredicate matcher, ByteGrep byteGrep, List<Charset> charsets,
+                                         Path path, int limit, boolean keepsLines, ContentIndex.Trigrams trigrams)
+            throws IOException {
+        List<Charset> candidates = charsets;
+        IOException error = null;
+        if (byteGrep != null) {
+            // ByteGrep greps in the default charset
+            GrepResult result = byteGrep.grep(path, limit, keepsLines, trigrams);
+            if (result != null)
+                return result;
+            log.debug(() -> "at doGrep, charset=default, malformed");
+            error = new MalformedInputException(1);
+            candidates = charsets.subList(1, charsets.size());
+            if (trigrams != null)
+                trigrams.reset();
+        }
+        final InputStream stream = Files.newInputStream(path);
+        try (InputStream is = (trigrams == null) ? stream : trigrams.wrap(stream)) {
+            byte[] block = new byte[SAMPLE_SIZE];
+            int length = 0;
+            for (int n; length < block.length && (n = is.read(block, length, block.length - length)) >= 0;)
+                length += n;
+            final boolean whole = length < block.length;
+            boolean read = false; // whether the stream has been read
+            for (Charset charset : candidates) {
+                final CoderResult cr = decode(ByteBuffer.wrap(block, 0, length), whole, charset);
                 try {
-                    return grep(matcher, path, charset);
-                } catch (IOException e1) {
+                    if (cr.isError())
+                        cr.throwException();
+                    if (read)
+                        // malformed after the first block, rarely
+                        return grep(matcher, Files.newBufferedReader(path, charset), limit, keepsLines);
+                    read = true;
+                    InputStream in = new SequenceInputStream(new ByteArrayInputStream(block, 0, length), is);
+                    return grep(matcher, new InputStreamReader(in, charset.newDecoder()), limit, keepsLines);
+                } catch (CharacterCodingException e) {
                     log.debug(() -> "at doGrep, charset=" + charset + ", e=" + e);
+                    if (error == null)
+                        error = e;
                 }
-            throw e;
+            }
+        }
+        throw error;
+    }
+
+    /*
+     * Decodes the bytes to test the charset.
+     * A sequence may be cut at the end, unless the bytes are the whole file.
+     */
+    private static CoderResult decode(ByteBuffer bytes, boolean whole, Charset charset) {
+        CharsetDecoder decoder = charset.newDecoder();
+        CharBuffer chars = CharBuffer.allocate(SAMPLE_SIZE);
+        while (true) {
+            CoderResult cr = decoder.decode(bytes, chars, whole);
+            if (cr.isOverflow())
+                chars.clear();
+            else if (cr.isError() || !whole)
+                return cr;
+            else
+                return decoder.flush(chars);
         }
     }
 
     public static List<FileLine> grep(StringMatchingPredicate matcher, Path path, Charset charset) throws IOException {
+        return grep(matcher, Files.newBufferedReader(path, charset), Integer.MAX_VALUE, true).lines;
+    }
+
+    /*
+     * Reads the lines until the limit of the matched lines.
+     */
+    private static GrepResult grep(StringMatchingPredicate matcher, Reader reader, int limit, boolean keepsLines)
+            throws IOException {
         List<FileLine> fileLines = new ArrayList<>();
-        try (LineNumberReader r = new LineNumberReader(Files.newBufferedReader(path, charset))) {
-            while (true) {
+        int count = 0;
+        try (LineNumberReader r = new LineNumberReader(reader)) {
+            while (count < limit) {
                 final String line = r.readLine();
                 if (line == null)
                     break;
-                if (matcher.matches(line))
-                    fileLines.add(new FileLine(r.getLineNumber(), line));
+                if (matcher.matches(line)) {
+                    if (keepsLines)
+                        fileLines.add(new FileLine(r.getLineNumber(), line));
+                    count++;
+                }
             }
         }
-        return fileLines;
+        return keepsLines ? GrepResult.of(fileLines) : GrepResult.counted(count);
     }
 
 }
@@ -0,0 +1,233 @@
+package potaufeu;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * A matcher of literal patterns without regular expressions.
+ *
+ * <p>Many literals are searched at once by the Aho-Corasick automaton, which has the complete transitions
+ * for ASCII characters, and follows the failure links for the others.
+ * A single case-insensitive literal is searched by Boyer-Moore-Horspool.
+ * A single case-sensitive literal uses <code>String#contains</code>, which the JVM optimizes.</p>
+ *
+ * <p>The case-insensitive matching folds only ASCII letters, as <code>(?i)</code> of regular expressions.
+ * So the regular expressions which are <code>(?)</code> or <code>(?i)</code> followed by a literal
+ * are also matched by this class.</p>
+ */
+final class LiteralMatcher implements StringMatchingPredicate {
+
+    static final int MAX_LITERALS = 64;
+
+    private static final Pattern LITERAL_REGEX = Pattern.compile("\\(\\?(i?)\\)([^\\\\^$.|?*+()\\[\\]{}]*)");
+    private static final int ASCII = 128;
+
+    private final boolean ignoreCase;
+    private final boolean all;
+    private final long goal;
+    private final int[] asciiTransitions; // state * ASCII + char
+    private final char[][] keys; // of non-ASCII transitions, sorted
+    private final int[][] targets;
+    private final int[] failures;
+    private final long[] outputs;
+
+    private LiteralMatcher(List<String> literals, boolean ignoreCase, boolean all) {
+        this.ignoreCase = ignoreCase;
+        this.all = all;
+        this.goal = literals.size() == 64 ? -1L : (1L << literals.size()) - 1L;
+        // trie
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Long> outputList = new ArrayList<>();
+        children.add(new TreeMap<>());
+        outputList.add(0L);
+        for (int i = 0; i < literals.size(); i++) {
+            int state = 0;
+            for (char c : literals.get(i).toCharArray()) {
+                final Character key = fold(c);
+                Integer next = children.get(state).get(key);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(key, next);
+                    children.add(new TreeMap<>());
+                    outputList.add(0L);
+                }
+                state = next;
+            }
+            outputList.set(state, outputList.get(state) | (1L << i));
+        }
+        final int n = children.size();
+        this.keys = new char[n][];
+        this.targets = new int[n][];
+        this.outputs = new long[n];
+        for (int state = 0; state < n; state++) {
+            final Map<Character, Integer> m = children.get(state);
+            keys[state] = new char[m.size()];
+            targets[state] = new int[m.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : m.entrySet()) {
+                keys[state][i] = entry.getKey();
+                targets[state][i] = entry.getValue();
+                i++;
+            }
+            outputs[state] = outputList.get(state);
+        }
+        // failure links in breadth-first order
+        this.failures = new int[n];
+        this.asciiTransitions = new int[n * ASCII];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < keys[0].length; i++)
+            queue.add(targets[0][i]);
+        for (int c = 0; c < ASCII; c++)
+            asciiTransitions[c] = Math.max(child(0, (char) c), 0);
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            final int failure = failures[state];
+            outputs[state] |= outputs[failure];
+            for (int c = 0; c < ASCII; c++) {
+                final int next = child(state, (char) c);
+                asciiTransitions[state * ASCII + c] = next >= 0 ? next : asciiTransitions[failure * ASCII + c];
+            }
+            for (int i = 0; i < keys[state].length; i++) {
+                final int next = targets[state][i];
+                failures[next] = transition(failure, keys[state][i]);
+                queue.add(next);
+            }
+        }
+    }
+
+    /**
+     * Creates the matcher of the literals.
+     * @param literals the literals
+     * @param ignoreCase whether ASCII case is ignored
+     * @param all true if all literals have to be contained, false if any of them
+     * @return the matcher
+     */
+    static StringMatchingPredicate create(List<String> literals, boolean ignoreCase, boolean all) {
+        List<String> a = new ArrayList<>();
+        for (String s : literals)
+            if (s.isEmpty()) {
+                if (!all)
+                    return x -> true;
+            }
+            else if (!a.contains(s))
+                a.add(s);
+        if (a.isEmpty())
+            return x -> all;
+        if (a.size() > MAX_LITERALS) {
+            List<StringMatchingPredicate> groups = new ArrayList<>();
+            for (int i = 0; i < a.size(); i += MAX_LITERALS)
+                groups.add(create(a.subList(i, Math.min(i + MAX_LITERALS, a.size())), ignoreCase, all));
+            return groups.stream().reduce(all ? StringMatchingPredicate::and : StringMatchingPredicate::or).get();
+        }
+        if (a.size() == 1) {
+            final String s = a.get(0);
+            return ignoreCase ? new Horspool(s) : x -> x.contains(s);
+        }
+        return new LiteralMatcher(a, ignoreCase, all);
+    }
+
+    /**
+     * Returns the literal of the pattern, if it is a literal or a literal regular expression.
+     * @param pattern the pattern
+     * @return the literal, or null if the pattern is not literal
+     */
+    static String literalOf(String pattern) {
+        if (!pattern.startsWith("(?"))
+            return pattern;
+        Matcher m = LITERAL_REGEX.matcher(pattern);
+        return m.matches() ? m.group(2) : null;
+    }
+
+    /**
+     * Returns whether the literal pattern ignores case.
+     * @param pattern the pattern which has a literal
+     * @return true if it ignores ASCII case
+     */
+    static boolean ignoresCase(String pattern) {
+        return pattern.startsWith("(?i)");
+    }
+
+    @Override
+    public boolean matches(String s) {
+        long found = 0L;
+        int state = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            state = transition(state, s.charAt(i));
+            final long output = outputs[state];
+            if (output != 0L) {
+                if (!all)
+                    return true;
+                found |= output;
+                if (found == goal)
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    private int transition(int state, char c) {
+        c = fold(c);
+        if (c < ASCII)
+            return asciiTransitions[state * ASCII + c];
+        for (;;) {
+            final int next = child(state, c);
+            if (next >= 0)
+                return next;
+            if (state == 0)
+                return 0;
+            state = failures[state];
+        }
+    }
+
+    private int child(int state, char c) {
+        final int i = Arrays.binarySearch(keys[state], c);
+        return i >= 0 ? targets[state][i] : -1;
+    }
+
+    private char fold(char c) {
+        return ignoreCase ? foldAscii(c) : c;
+    }
+
+    static char foldAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * The Boyer-Moore-Horspool search of a literal, ignoring ASCII case.
+     * The shifts are indexed by the lower byte of chars, with the smallest shift for the chars sharing it.
+     */
+    static final class Horspool implements StringMatchingPredicate {
+
+        private final char[] pattern;
+        private final int[] shifts;
+
+        Horspool(String s) {
+            this.pattern = new char[s.length()];
+            for (int i = 0; i < pattern.length; i++)
+                pattern[i] = foldAscii(s.charAt(i));
+            this.shifts = new int[256];
+            final int m = pattern.length;
+            Arrays.fill(shifts, m);
+            for (int i = 0; i < m - 1; i++)
+                shifts[pattern[i] & 0xFF] = m - 1 - i;
+        }
+
+        @Override
+        public boolean matches(String s) {
+            final int m = pattern.length;
+            final int n = s.length();
+            for (int i = m - 1; i < n; i += shifts[foldAscii(s.charAt(i)) & 0xFF]) {
+                int j = m - 1;
+                int k = i;
+                while (j >= 0 && foldAscii(s.charAt(k)) == pattern[j]) {
+                    j--;
+                    k--;
+                }
+                if (j < 0)
+                    return true;
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package potaufeu;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/**
+ * A conjunction of entry matchers, which evaluates the cheap and selective ones first.
+ *
+ * <p>The matchers are ordered by <code>cost / (1 - pass rate)</code>, which minimizes the expected cost
+ * of the chain when the matchers are independent.
+ * The pass rates are unknown at first, so the initial order is by the cost classes.
+ * Then the order is recomputed from the pass rates measured at every interval of tests.
+ * The result does not depend on the order, since the matchers have no side effects.</p>
+ *
+ * <p>This class is thread-safe; the counts may be approximate while tested in parallel.</p>
+ */
+final class MatcherChain implements Predicate<PathEntry> {
+
+    static final int REORDER_INTERVAL = 1024;
+
+    private final Stage[] stages;
+    private final AtomicLong tested;
+
+    private volatile Stage[] order;
+
+    MatcherChain(EntryMatcher... matchers) {
+        this.stages = new Stage[matchers.length];
+        for (int i = 0; i < matchers.length; i++)
+            stages[i] = new Stage(matchers[i], i);
+        this.tested = new AtomicLong();
+        this.order = sorted();
+    }
+
+    @Override
+    public boolean test(PathEntry entry) {
+        if (tested.incrementAndGet() % REORDER_INTERVAL == 0)
+            order = sorted();
+        for (Stage stage : order)
+            if (!stage.test(entry))
+                return false;
+        return true;
+    }
+
+    /**
+     * Returns the matchers in the current order.
+     * @return the matchers
+     */
+    List<EntryMatcher> matchers() {
+        List<EntryMatcher> a = new ArrayList<>();
+        for (Stage stage : order)
+            a.add(stage.matcher);
+        return a;
+    }
+
+    private Stage[] sorted() {
+        Stage[] a = stages.clone();
+        double[] ranks = new double[a.length];
+        for (Stage stage : a)
+            ranks[stage.index] = stage.rank();
+        // stable, keeping the given order for ties
+        Arrays.sort(a, Comparator.comparingDouble(x -> ranks[x.index]));
+        return a;
+    }
+
+    private static final class Stage {
+        final EntryMatcher matcher;
+        final int index;
+        final LongAdder evaluated = new LongAdder();
+        final LongAdder passed = new LongAdder();
+
+        Stage(EntryMatcher matcher, int index) {
+            this.matcher = matcher;
+            this.index = index;
+        }
+
+        boolean test(PathEntry entry) {
+            evaluated.increment();
+            if (!matcher.matches(entry))
+                return false;
+            passed.increment();
+            return true;
+        }
+
+        double rank() {
+            // with one pass and one failure assumed before the measurement
+            final double passRate = (passed.sum() + 1d) / (evaluated.sum() + 2d);
+            return matcher.cost().weight / (1d - passRate);
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+package potaufeu;
+
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * A matcher of the file names, compiled from the name patterns and the extensions.
+ * An entry matches if its name matches all name patterns and one of the extensions.
+ *
+ * <p>The name is the one memoized by PathEntry, and the test does not create any strings.
+ * The name patterns are matched by StringMatchingPredicate, which searches the literals at once.
+ * The literal extensions (ASCII letters, digits, '_' and '-') are indexed by length,
+ * and are compared with the suffixes of the name after each dot, ignoring ASCII case.
+ * The other extensions are compiled into one regular expression, as before.</p>
+ */
+final class NameMatcher implements EntryMatcher {
+
+    private static final Pattern LITERAL_EXTENSION = Pattern.compile("[A-Za-z0-9_\\-]+");
+
+    private final StringMatchingPredicate nameMatcher; // null: no name patterns
+    private final boolean filtersExtensions;
+    private final char[][][] extensionsByLength; // lower case
+    private final Pattern extensionPattern;
+
+    private NameMatcher(StringMatchingPredicate nameMatcher, List<String> extensions,
+            List<String> extensionPatterns) {
+        this.nameMatcher = nameMatcher;
+        this.filtersExtensions = !extensions.isEmpty() || !extensionPatterns.isEmpty();
+        final int maxLength = extensions.stream().mapToInt(String::length).max().orElse(0);
+        this.extensionsByLength = new char[maxLength + 1][][];
+        for (int n = 1; n <= maxLength; n++) {
+            final int length = n;
+            extensionsByLength[n] = extensions.stream().filter(x -> x.length() == length).distinct()
+                    .map(String::toCharArray).toArray(char[][]::new);
+        }
+        if (extensionPatterns.isEmpty())
+            this.extensionPattern = null;
+        else if (extensionPatterns.size() == 1)
+            this.extensionPattern = Pattern.compile("(?i).*\\." + extensionPatterns.get(0));
+        else
+            this.extensionPattern =
+                Pattern.compile(String.format("(?i).*\\.(%s)", String.join("|", extensionPatterns)));
+    }
+
+    /**
+     * Compiles the patterns.
+     * @param namePatterns the name patterns, literals or regular expressions
+     * @param extensions the extensions, which may be regular expressions
+     * @return the matcher, or empty if no patterns
+     */
+    static Optional<NameMatcher> compile(List<String> namePatterns, List<String> extensions) {
+        List<String> patterns = new ArrayList<>();
+        for (String s : namePatterns)
+            if (!s.isEmpty())
+                patterns.add(s);
+        List<String> literalExtensions = new ArrayList<>();
+        List<String> extensionPatterns = new ArrayList<>();
+        for (String s : extensions)
+            if (LITERAL_EXTENSION.matcher(s).matches())
+                literalExtensions.add(s.toLowerCase(Locale.ROOT));
+            else
+                extensionPatterns.add(s);
+        if (patterns.isEmpty() && extensions.isEmpty())
+            return Optional.empty();
+        final StringMatchingPredicate nameMatcher = patterns.isEmpty() ? null : StringMatchingPredicate.create(patterns);
+        return Optional.of(new NameMatcher(nameMatcher, literalExtensions, extensionPatterns));
+    }
+
+    @Override
+    public boolean matches(PathEntry entry) {
+        return matches(entry.name());
+    }
+
+    boolean matches(String name) {
+        if (nameMatcher != null && !nameMatcher.matches(name))
+            return false;
+        return !filtersExtensions || matchesExtension(name);
+    }
+
+    private boolean matchesExtension(String name) {
+        final int n = name.length();
+        for (int i = n - 2; i >= 0 && n - i - 1 < extensionsByLength.length; i--)
+            if (name.charAt(i) == '.')
+                for (char[] ext : extensionsByLength[n - i - 1])
+                    if (regionMatchesIgnoreAsciiCase(name, i + 1, ext))
+                        return true;
+        return extensionPattern != null && extensionPattern.matcher(name).matches();
+    }
+
+    private static boolean regionMatchesIgnoreAsciiCase(String s, int offset, char[] lowerCase) {
+        for (int i = 0; i < lowerCase.length; i++) {
+            if (LiteralMatcher.foldAscii(s.charAt(offset + i)) != lowerCase[i])
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Cost cost() {
+        return Cost.PATH;
+    }
+
+}
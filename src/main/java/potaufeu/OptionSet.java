@@ -27,6 +27,7 @@ public final class OptionSet {
     private List<String> grepPatterns;
     private boolean file;
     private boolean text;
+    private List<String> contentTypes;
     private boolean quiet;
     private boolean printsFullpath;
     private boolean printsList;
@@ -34,11 +35,26 @@ public final class OptionSet {
     private boolean printsDetailList;
     private boolean printsLineCount;
     private boolean printsAsTsv;
+    private boolean printsFilesWithMatches;
+    private boolean printsMatchCount;
+    private OptionalInt maxCount;
     private OptionalInt maxDepth;
+    private boolean depthFirst;
+    private boolean followsLinks;
+    private boolean readsIgnoreFiles;
+    private boolean oneFileSystem;
+    private boolean updatesIndex;
+    private boolean noIndex;
+    private boolean daemon;
+    private boolean usesContentIndex;
+    private boolean server;
     private OptionalInt headCount;
     private OptionalInt tailCount;
     private boolean collectsExtension;
+    private boolean findsDuplicates;
     private List<String> sortKeys;
+    private OptionalInt threads;
+    private OptionalInt virtualThreads;
     private boolean slash;
     private boolean interactive;
     private boolean verbose;
@@ -126,6 +142,10 @@ public final class OptionSet {
         return text;
     }
 
+    public List<String> getContentTypes() {
+        return contentTypes;
+    }
+
     public boolean isQuiet() {
         return quiet;
     }
@@ -158,6 +178,54 @@ public final class OptionSet {
         return maxDepth;
     }
 
+    public boolean isDepthFirst() {
+        return depthFirst;
+    }
+
+    public boolean isFollowsLinks() {
+        return followsLinks;
+    }
+
+    public boolean isReadsIgnoreFiles() {
+        return readsIgnoreFiles;
+    }
+
+    public boolean isOneFileSystem() {
+        return oneFileSystem;
+    }
+
+    public boolean isUpdatesIndex() {
+        return updatesIndex;
+    }
+
+    public boolean isNoIndex() {
+        return noIndex;
+    }
+
+    public boolean isDaemon() {
+        return daemon;
+    }
+
+    public boolean isServer() {
+        return server;
+    }
+
+    public boolean isUsesContentIndex() {
+        return usesContentIndex;
+    }
+
+    public boolean isPrintsFilesWithMatches() {
+        return printsFilesWithMatches;
+    }
+
+    public boolean isPrintsMatchCount() {
+        return printsMatchCount;
+    }
+
+    public OptionalInt getMaxCount() {
+        return maxCount;
+    }
+
     public OptionalInt getHeadCount() {
         return headCount;
     }
@@ -170,10 +238,22 @@ public final class OptionSet {
         return collectsExtension;
     }
 
+    public boolean isFindsDuplicates() {
+        return findsDuplicates;
+    }
+
     public List<String> getSortKeys() {
         return sortKeys;
     }
 
+    public OptionalInt getThreads() {
+        return threads;
+    }
+
+    public OptionalInt getVirtualThreads() {
+        return virtualThreads;
+    }
+
     public boolean isSlash() {
         return slash;
     }
@@ -218,6 +298,7 @@ public final class OptionSet {
         private static final String OPTION_ATIME = "atime";
         private static final String OPTION_FILE = "file";
         private static final String OPTION_TEXT = "text";
+        private static final String OPTION_TYPE = "type";
         private static final String OPTION_GREP = "grep";
         // outputs
         private static final String OPTION_QUIET = "quiet";
@@ -227,16 +308,32 @@ public final class OptionSet {
         private static final String OPTION_LIST_DETAIL = "list-detail";
         private static final String OPTION_LIST_LINES = "list-lines";
         private static final String OPTION_LIST_AS_TSV = "list-as-tsv";
+        private static final String OPTION_FILES_WITH_MATCHES = "files-with-matches";
+        private static final String OPTION_COUNT = "count";
         // limitters
         private static final String OPTION_DEPTH = "depth";
+        private static final String OPTION_DEPTH_FIRST = "depth-first";
+        private static final String OPTION_FOLLOW = "follow";
+        private static final String OPTION_NO_FOLLOW = "no-follow";
+        private static final String OPTION_IGNORE_FILES = "ignore-files";
+        private static final String OPTION_ONE_FILESYSTEM = "one-filesystem";
         private static final String OPTION_HEAD = "head";
         private static final String OPTION_HEADS = "heads";
         private static final String OPTION_TAIL = "tail";
         private static final String OPTION_TAILS = "tails";
+        private static final String OPTION_MAX_COUNT = "max-count";
         // others
         private static final String OPTION_DIR = "dir";
         private static final String OPTION_EXTENSIONS = "exts";
+        private static final String OPTION_DUPLICATES = "duplicates";
         private static final String OPTION_SORT = "sort";
+        private static final String OPTION_UPDATE_INDEX = "update-index";
+        private static final String OPTION_NO_INDEX = "no-index";
+        private static final String OPTION_DAEMON = "daemon";
+        private static final String OPTION_CONTENT_INDEX = "content-index";
+        private static final String OPTION_SERVER = "server";
+        private static final String OPTION_THREADS = "threads";
+        private static final String OPTION_VTHREADS = "vthreads";
         private static final String OPTION_SLASH = "slash";
         private static final String OPTION_INTERACTIVE = "interactive";
         private static final String OPTION_VERBOSE = "verbose";
@@ -255,6 +352,7 @@ public final class OptionSet {
             option(OPTION_ATIME, true);
             option(OPTION_FILE, "F");
             option(OPTION_TEXT, "T");
+            option(OPTION_TYPE, true);
             option(OPTION_GREP, "g", true);
             option(OPTION_DIR, "d", true);
             option(OPTION_QUIET, "q");
@@ -264,13 +362,29 @@ public final class OptionSet {
             option(OPTION_LIST_DETAIL);
             option(OPTION_LIST_LINES);
             option(OPTION_LIST_AS_TSV);
+            option(OPTION_FILES_WITH_MATCHES);
+            option(OPTION_COUNT);
             option(OPTION_DEPTH, true);
+            option(OPTION_DEPTH_FIRST);
+            option(OPTION_FOLLOW);
+            option(OPTION_NO_FOLLOW);
+            option(OPTION_IGNORE_FILES);
+            option(OPTION_ONE_FILESYSTEM);
             option(OPTION_HEAD, true);
             option(OPTION_HEADS);
             option(OPTION_TAIL, true);
             option(OPTION_TAILS);
+            option(OPTION_MAX_COUNT, true);
             option(OPTION_EXTENSIONS);
+            option(OPTION_DUPLICATES);
             option(OPTION_SORT, "S", true);
+            option(OPTION_UPDATE_INDEX);
+            option(OPTION_NO_INDEX);
+            option(OPTION_DAEMON);
+            option(OPTION_CONTENT_INDEX);
+            option(OPTION_SERVER);
+            option(OPTION_THREADS, true);
+            option(OPTION_VTHREADS, true);
             option(OPTION_SLASH);
             option(OPTION_INTERACTIVE, "i");
             option(OPTION_VERBOSE);
@@ -286,6 +400,10 @@ public final class OptionSet {
             OptionSet o = new OptionSet();
             CommandLineParser parser = new PosixParser();
             CommandLine cl = parser.parse(options, args);
+            // the depth-first walker has no splitting, so it cannot run in parallel
+            exclusive(cl, OPTION_DEPTH_FIRST, OPTION_THREADS);
+            // the paths of the matched files are printed without the counts
+            exclusive(cl, OPTION_COUNT, OPTION_FILES_WITH_MATCHES);
             o.namePatterns = stringValues(cl, OPTION_NAME);
             o.exclusionPatterns = stringValues(cl, OPTION_EXCLUDE);
             o.fileSizePatterns = stringValues(cl, OPTION_SIZE);
@@ -294,6 +412,7 @@ public final class OptionSet {
             o.atimePatterns = stringValues(cl, OPTION_ATIME);
             o.file = bool(cl, OPTION_FILE);
             o.text = bool(cl, OPTION_TEXT);
+            o.contentTypes = stringValues(cl, OPTION_TYPE);
             o.grepPatterns = stringValues(cl, OPTION_GREP);
             o.directories = stringValues(cl, OPTION_DIR);
             o.quiet = bool(cl, OPTION_QUIET);
@@ -303,11 +422,26 @@ public final class OptionSet {
             o.printsDetailList = bool(cl, OPTION_LIST_DETAIL);
             o.printsLineCount = bool(cl, OPTION_LIST_LINES);
             o.printsAsTsv = bool(cl, OPTION_LIST_AS_TSV);
+            o.printsFilesWithMatches = bool(cl, OPTION_FILES_WITH_MATCHES);
+            o.printsMatchCount = bool(cl, OPTION_COUNT);
             o.maxDepth = optIntValue(cl, OPTION_DEPTH);
+            o.depthFirst = bool(cl, OPTION_DEPTH_FIRST);
+            o.followsLinks = followsLinks(cl);
+            o.readsIgnoreFiles = bool(cl, OPTION_IGNORE_FILES);
+            o.oneFileSystem = bool(cl, OPTION_ONE_FILESYSTEM);
             o.headCount = optIntValue(cl, OPTION_HEAD, OPTION_HEADS, 10);
             o.tailCount = optIntValue(cl, OPTION_TAIL, OPTION_TAILS, 10);
+            o.maxCount = optIntValue(cl, OPTION_MAX_COUNT);
             o.collectsExtension = bool(cl, OPTION_EXTENSIONS);
+            o.findsDuplicates = bool(cl, OPTION_DUPLICATES);
             o.sortKeys = sortKeys(cl);
+            o.updatesIndex = bool(cl, OPTION_UPDATE_INDEX);
+            o.noIndex = bool(cl, OPTION_NO_INDEX);
+            o.daemon = bool(cl, OPTION_DAEMON);
+            o.usesContentIndex = bool(cl, OPTION_CONTENT_INDEX);
+            o.server = bool(cl, OPTION_SERVER);
+            o.threads = optIntValue(cl, OPTION_THREADS);
+            o.virtualThreads = optIntValue(cl, OPTION_VTHREADS);
             o.slash = bool(cl, OPTION_SLASH);
             o.interactive = bool(cl, OPTION_INTERACTIVE);
             o.verbose = bool(cl, OPTION_VERBOSE);
@@ -326,6 +460,20 @@ public final class OptionSet {
             return o;
         }
 
+        static boolean followsLinks(CommandLine cl) {
+            final boolean follow = bool(cl, OPTION_FOLLOW);
+            final boolean noFollow = bool(cl, OPTION_NO_FOLLOW);
+            if (follow && noFollow)
+                throw new IllegalArgumentException(message("e.exclusiveOptions", OPTION_FOLLOW, OPTION_NO_FOLLOW));
+            // true by default
+            return !noFollow;
+        }
+
+        static void exclusive(CommandLine cl, String optionKey1, String optionKey2) {
+            if (cl.hasOption(optionKey1) && cl.hasOption(optionKey2))
+                throw new IllegalArgumentException(message("e.exclusiveOptions", optionKey1, optionKey2));
+        }
+
         static List<String> sortKeys(CommandLine cl) {
             return stringValues(cl, OPTION_SORT).stream().map(x -> Arrays.asList(x.split(",")))
                     .flatMap(Collection::stream).collect(Collectors.toList());
@@ -0,0 +1,99 @@
+package potaufeu;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * An iterator which evaluates a predicate on an executor ahead of the consumer,
+ * and returns the elements which passed in the original order.
+ * This class is not thread-safe.
+ * @param <T> the type of elements
+ */
+final class OrderedFilter<T> implements Iterator<T> {
+
+    private final Iterator<T> source;
+    private final Predicate<? super T> predicate;
+    private final ExecutorService executor;
+    private final int window;
+    private final Queue<T> elements;
+    private final Queue<Future<Boolean>> results;
+
+    private T next;
+    private boolean ready;
+
+    OrderedFilter(Iterator<T> source, Predicate<? super T> predicate, ExecutorService executor, int window) {
+        this.source = source;
+        this.predicate = predicate;
+        this.executor = executor;
+        this.window = window;
+        this.elements = new LinkedList<>();
+        this.results = new LinkedList<>();
+    }
+
+    /**
+     * Filters the stream with evaluating at most <code>window</code> elements at once.
+     * @param stream the source stream
+     * @param predicate the predicate
+     * @param executor the executor which evaluates the predicate
+     * @param window the maximum number of elements in flight
+     * @return the filtered sequential stream
+     */
+    static <T> Stream<T> filter(Stream<T> stream, Predicate<? super T> predicate, ExecutorService executor,
+            int window) {
+        OrderedFilter<T> it = new OrderedFilter<>(stream.iterator(), predicate, executor, window);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+                .onClose(stream::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready)
+            return true;
+        fill();
+        while (!results.isEmpty()) {
+            final T x = elements.poll();
+            final boolean passed = await(results.poll());
+            fill();
+            if (passed) {
+                next = x;
+                ready = true;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        final T x = next;
+        next = null;
+        ready = false;
+        return x;
+    }
+
+    private void fill() {
+        while (results.size() < window && source.hasNext()) {
+            final T x = source.next();
+            elements.offer(x);
+            results.offer(executor.submit(() -> predicate.test(x)));
+        }
+    }
+
+    private static boolean await(Future<Boolean> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}
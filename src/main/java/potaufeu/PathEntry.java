@@ -0,0 +1,210 @@
+package potaufeu;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+
+/**
+ * A path with its file attributes.
+ * The attributes are read on demand, and shared from traversal to output,
+ * so that filters, sorters and printers do not read them again.
+ * (Concurrent first accesses may read them twice, which is harmless.)
+ */
+public final class PathEntry {
+
+    private final Path path;
+
+    private volatile BasicFileAttributes attr;
+    private volatile IOException failure;
+    private volatile Boolean symbolicLink; // null: unknown
+    private volatile long[] devIno; // null: not read yet
+    private volatile TextSniffer.Content content; // null: not read yet
+    private String name;
+
+    public PathEntry(Path path) {
+        this.path = path;
+    }
+
+    public PathEntry(Path path, BasicFileAttributes attributes) {
+        this.path = path;
+        this.attr = attributes;
+    }
+
+    PathEntry(Path path, BasicFileAttributes attributes, boolean symbolicLink) {
+        this.path = path;
+        this.attr = attributes;
+        this.symbolicLink = symbolicLink;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the attributes of the file located by this path, following symbolic links.
+     * If the link is broken, returns the attributes of the link itself.
+     * @return the attributes ({@link PosixFileAttributes} if available)
+     * @throws UncheckedIOException if the attributes cannot be read
+     */
+    public BasicFileAttributes attributes() {
+        BasicFileAttributes a = attributesOrNull();
+        if (a == null)
+            throw new UncheckedIOException(failure);
+        return a;
+    }
+
+    private BasicFileAttributes attributesOrNull() {
+        BasicFileAttributes a = attr;
+        if (a != null || failure != null)
+            return a;
+        try {
+            a = FileAttributeFormatter.readAttributes(path, LinkOption.NOFOLLOW_LINKS);
+            final boolean isLink = a.isSymbolicLink();
+            if (isLink)
+                try {
+                    a = FileAttributeFormatter.readAttributes(path);
+                } catch (IOException e) {
+                    // broken link
+                }
+            symbolicLink = isLink;
+            attr = a;
+        } catch (IOException e) {
+            failure = e;
+        }
+        return a;
+    }
+
+    public boolean exists() {
+        return attributesOrNull() != null;
+    }
+
+    public boolean isDirectory() {
+        BasicFileAttributes a = attributesOrNull();
+        return a != null && a.isDirectory();
+    }
+
+    public boolean isRegularFile() {
+        BasicFileAttributes a = attributesOrNull();
+        return a != null && a.isRegularFile();
+    }
+
+    public boolean isSymbolicLink() {
+        attributesOrNull();
+        Boolean b = symbolicLink;
+        if (b == null)
+            symbolicLink = b = Files.isSymbolicLink(path);
+        return b;
+    }
+
+    /**
+     * Returns the file size.
+     * @return the number of bytes, or -1 if the attributes cannot be read
+     */
+    public long size() {
+        BasicFileAttributes a = attributesOrNull();
+        return (a == null) ? -1L : a.size();
+    }
+
+    public long ctime() {
+        BasicFileAttributes a = attributesOrNull();
+        return (a == null) ? 0L : a.creationTime().toMillis();
+    }
+
+    public long mtime() {
+        BasicFileAttributes a = attributesOrNull();
+        return (a == null) ? 0L : a.lastModifiedTime().toMillis();
+    }
+
+    public long atime() {
+        BasicFileAttributes a = attributesOrNull();
+        return (a == null) ? 0L : a.lastAccessTime().toMillis();
+    }
+
+    /**
+     * Returns the device number of the file, following symbolic links.
+     * It is read with the inode number by the unix attribute view on the first call.
+     * @return the device number, or -1 if unavailable
+     */
+    long device() {
+        return devIno()[0];
+    }
+
+    /**
+     * Returns the inode number of the file, following symbolic links.
+     * @return the inode number, or -1 if unavailable
+     * @see #device()
+     */
+    long inode() {
+        return devIno()[1];
+    }
+
+    private long[] devIno() {
+        long[] a = devIno;
+        if (a == null) {
+            a = new long[] { -1L, -1L };
+            if (attributesOrNull() != null)
+                try {
+                    Map<String, Object> m = Files.readAttributes(path, "unix:dev,ino");
+                    a[0] = ((Number) m.get("dev")).longValue();
+                    a[1] = ((Number) m.get("ino")).longValue();
+                } catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+                    a[0] = a[1] = -1L; // unavailable
+                }
+            devIno = a;
+        }
+        return a;
+    }
+
+    /**
+     * Returns the kind of the content, classified by the first block on the first call.
+     * @return the kind, or UNKNOWN if not a regular file or cannot be read
+     */
+    TextSniffer.Kind contentKind() {
+        return content().kind;
+    }
+
+    /**
+     * Returns the type of the content, detected by the first block on the first call.
+     * @return the type, or null if unknown
+     */
+    ContentType contentType() {
+        return content().type;
+    }
+
+    private TextSniffer.Content content() {
+        TextSniffer.Content c = content;
+        if (c == null) {
+            try {
+                c = isRegularFile() ? TextSniffer.sniff(path) : TextSniffer.Content.UNKNOWN;
+            } catch (IOException e) {
+                c = TextSniffer.Content.UNKNOWN;
+            }
+            content = c;
+        }
+        return c;
+    }
+
+    public char entryType() {
+        if (isDirectory())
+            return 'd';
+        if (isSymbolicLink())
+            return 'l';
+        if (isRegularFile())
+            return '-';
+        return '?';
+    }
+
+    public String name() {
+        String s = name;
+        if (s == null)
+            name = s = FileAttributeFormatter.name(path);
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+}
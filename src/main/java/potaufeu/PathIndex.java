@@ -0,0 +1,760 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.security.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * A persistent index of the paths under a root directory, like the database of locate.
+ *
+ * <p>The index file has a header and the records of all entries in depth-first order,
+ * with the entries of each directory sorted by name.
+ * A record has the depth, the path relative to the root, the type, the size and the mtime.
+ * The paths are front-coded: each record stores only the bytes which differ from the previous path.
+ * The file is read through memory mapping.</p>
+ *
+ * <p>When the index is read, the mtime of each indexed directory is compared with the current one,
+ * and only the changed directories are listed again.
+ * New entries are walked, removed entries are dropped, and the rest comes from the index.
+ * The attributes of files in unchanged directories are as of the last update,
+ * and the ctime and atime are not indexed (the mtime is returned instead),
+ * so the index is not used for the options which require them.</p>
+ */
+final class PathIndex {
+
+    private static final Log log = Log.logger(PathIndex.class);
+
+    private static final byte[] MAGIC = "POTFIDX1".getBytes(UTF_8);
+    private static final int FLAG_FOLLOW = 1;
+    private static final int FLAG_IGNORE_FILES = 2;
+    private static final int FLAG_ONE_FILESYSTEM = 4;
+
+    private static final byte TYPE_DIRECTORY = 1;
+    private static final byte TYPE_REGULAR_FILE = 2;
+    private static final byte TYPE_SYMBOLIC_LINK = 4;
+    private static final byte TYPE_OTHER = 8;
+    private static final byte TYPE_RELISTED = 16; // a directory to be listed every time
+
+    /**
+     * The order of relative paths in the index: depth-first, and by name in each directory.
+     */
+    static final Comparator<String> PATH_ORDER = (a, b) -> {
+        final int n = Math.min(a.length(), b.length());
+        for (int i = 0; i < n; i++) {
+            final char c1 = a.charAt(i);
+            final char c2 = b.charAt(i);
+            if (c1 != c2) {
+                // the end of a name comes before any character
+                if (c1 == File.separatorChar)
+                    return -1;
+                if (c2 == File.separatorChar)
+                    return 1;
+                return c1 - c2;
+            }
+        }
+        return a.length() - b.length();
+    };
+
+    private final Path file;
+    private final long createdTime;
+
+    private PathIndex(Path file, long createdTime) {
+        this.file = file;
+        this.createdTime = createdTime;
+    }
+
+    /**
+     * Returns the index of the root, if it exists and was built with the same traversal options.
+     * @param root the root directory
+     * @param options the options
+     * @return the index, or empty
+     */
+    static Optional<PathIndex> open(Path root, TraversalOptions options) {
+        final Path file;
+        try {
+            file = indexFile(root);
+        } catch (IllegalStateException e) {
+            log.debug(() -> "no index directory: " + e.getMessage());
+            return Optional.empty();
+        }
+        if (!Files.isRegularFile(file))
+            return Optional.empty();
+        final Header header;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            header = Header.read(in);
+            log.debug(() -> String.format("index of %s: created at %tc", header.root, header.createdTime));
+            if (!header.root.equals(toRealPath(root).toString()))
+                return Optional.empty();
+            if (header.flags != flags(options)) {
+                log.info(() -> String.format("index of %s is not used: flags=%d, expected=%d", root, header.flags,
+                    flags(options)));
+                return Optional.empty();
+            }
+        } catch (IOException e) {
+            log.warn(() -> "failed to read index: " + file, e);
+            return Optional.empty();
+        }
+        return Optional.of(new PathIndex(file, header.createdTime));
+    }
+
+    /**
+     * Returns the entries under the root from this index, refreshing the changed directories.
+     * If the options have the substrings of matching paths, the trigram index selects the candidates,
+     * and the other entries are not returned.
+     * @param root the root directory, as the parent of the paths to return
+     * @param options the options
+     * @return the stream of entries
+     */
+    Stream<PathEntry> entries(Path root, TraversalOptions options) {
+        final Reader reader;
+        try {
+            reader = new Reader(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Optional<TrigramIndex.Filter> filter =
+            TrigramIndex.filter(trigramFile(file), createdTime, root, options.pathSubstrings, options.nameSubstrings);
+        filter.ifPresent(reader::skipUnaccepted);
+        Refresher refresher = new Refresher(root, reader, options);
+        Supplier<Record> records = filter.isPresent() ? () -> {
+            Record r;
+            do
+                r = refresher.next();
+            while (r != null && !filter.get().accepts(r));
+            return r;
+        } : refresher::next;
+        Iterator<PathEntry> it = new Iterator<PathEntry>() {
+            private Record next = records.get();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public PathEntry next() {
+                if (next == null)
+                    throw new NoSuchElementException();
+                final Record r = next;
+                next = records.get();
+                return r.toEntry(root);
+            }
+        };
+        Spliterator<PathEntry> spliterator = Spliterators.spliteratorUnknownSize(it, Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(reader::close);
+    }
+
+    /**
+     * Builds or refreshes the index of the root, and writes it.
+     * @param root the root directory
+     * @param options the options, without filters
+     * @return the number of entries
+     * @throws IOException
+     */
+    static long update(Path root, TraversalOptions options) throws IOException {
+        final Path realRoot = root.toRealPath();
+        final Reader reader = open(realRoot, options).isPresent() ? new Reader(indexFile(realRoot)) : null;
+        try {
+            return save(realRoot, flags(options), new Refresher(realRoot, reader, options)::next);
+        } finally {
+            if (reader != null)
+                reader.close();
+        }
+    }
+
+    /**
+     * Writes the index of the root, replacing the existing one atomically.
+     * @param realRoot the real path of the root directory
+     * @param flags the flags of the traversal options
+     * @param records the records in depth-first order, or null at the end
+     * @return the number of entries
+     * @throws IOException
+     */
+    static long save(Path realRoot, int flags, Supplier<Record> records) throws IOException {
+        final Path file = indexFile(realRoot);
+        final Path trigramFile = trigramFile(file);
+        Files.createDirectories(file.getParent());
+        final Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        final Path trigramTmp = Files.createTempFile(file.getParent(), trigramFile.getFileName().toString(), ".tmp");
+        try {
+            final long createdTime = System.currentTimeMillis();
+            final TrigramIndex.Builder trigrams = new TrigramIndex.Builder();
+            final long count;
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+                count = write(os, realRoot, flags, createdTime, () -> {
+                    final Record r = records.get();
+                    if (r != null)
+                        trigrams.add(r.name());
+                    return r;
+                });
+            }
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(trigramTmp), 1 << 16)) {
+                trigrams.write(os, createdTime);
+            }
+            // the trigram index of another version is not used
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(trigramTmp, trigramFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return count;
+        } finally {
+            Files.deleteIfExists(tmp);
+            Files.deleteIfExists(trigramTmp);
+        }
+    }
+
+    static long write(OutputStream os, Path realRoot, Reader reader, TraversalOptions options) throws IOException {
+        return write(os, realRoot, flags(options), System.currentTimeMillis(),
+            new Refresher(realRoot, reader, options)::next);
+    }
+
+    static long write(OutputStream os, Path realRoot, int flags, long createdTime, Supplier<Record> records)
+            throws IOException {
+        DataOutputStream out = new DataOutputStream(os);
+        new Header(flags, createdTime, realRoot.toString()).write(out);
+        byte[] prev = new byte[0];
+        long count = 0L;
+        for (Record r; (r = records.get()) != null; count++) {
+            final byte[] bytes = r.relativePath.getBytes(UTF_8);
+            final int shared = sharedLength(prev, bytes);
+            writeVarLong(out, r.depth + 1);
+            writeVarLong(out, shared);
+            writeVarLong(out, bytes.length - shared);
+            out.write(bytes, shared, bytes.length - shared);
+            out.writeByte(r.type);
+            writeVarLong(out, Math.max(0L, r.size));
+            out.writeLong(r.mtime);
+            prev = bytes;
+        }
+        writeVarLong(out, 0L); // end
+        out.flush();
+        return count;
+    }
+
+    static Path indexFile(Path root) {
+        final Path realRoot = toRealPath(root);
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(realRoot.toString().getBytes(UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest)
+                sb.append(String.format("%02x", b & 0xFF));
+            return InteractiveMode.getWorkingDirectory().toPath().resolve("index").resolve(sb + ".idx");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static Path trigramFile(Path indexFile) {
+        return indexFile.resolveSibling(indexFile.getFileName().toString().replaceFirst("\\.idx$", "") + ".tri");
+    }
+
+    private static Path toRealPath(Path path) {
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return path.toAbsolutePath().normalize();
+        }
+    }
+
+    static int flags(TraversalOptions options) {
+        int flags = 0;
+        if (options.visited != null)
+            flags |= FLAG_FOLLOW;
+        if (options.ignoreFiles != null)
+            flags |= FLAG_IGNORE_FILES;
+        if (options.oneFileSystem)
+            flags |= FLAG_ONE_FILESYSTEM;
+        return flags;
+    }
+
+    /*
+     * A file name which is not representable in the platform encoding cannot be restored from the index.
+     * The directories which contain such names are marked to be listed every time.
+     */
+    static boolean roundTrips(PathEntry entry) {
+        final Path name = entry.getPath().getFileName();
+        try {
+            return name == null || name.getFileSystem().getPath(name.toString()).equals(name);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private static boolean allRoundTrip(List<PathEntry> entries) {
+        for (PathEntry entry : entries)
+            if (!roundTrips(entry))
+                return false;
+        return true;
+    }
+
+    private static int sharedLength(byte[] a, byte[] b) {
+        final int n = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < n && a[i] == b[i])
+            i++;
+        return i;
+    }
+
+    static void writeVarLong(DataOutput out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0L) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long v = 0L;
+        for (int shift = 0;; shift += 7) {
+            final byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    private static final class Header {
+        final int flags;
+        final long createdTime;
+        final String root;
+
+        Header(int flags, long createdTime, String root) {
+            this.flags = flags;
+            this.createdTime = createdTime;
+            this.root = root;
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.write(MAGIC);
+            out.writeInt(flags);
+            out.writeLong(createdTime);
+            out.writeUTF(root);
+        }
+
+        static Header read(DataInput in) throws IOException {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC))
+                throw new IOException("not an index file");
+            final int flags = in.readInt();
+            final long createdTime = in.readLong();
+            return new Header(flags, createdTime, in.readUTF());
+        }
+    }
+
+    /**
+     * A record of an entry.
+     */
+    static final class Record {
+        final String relativePath; // empty for the root
+        final int depth;
+        final byte type;
+        final long size;
+        final long mtime;
+        final PathEntry entry; // null: read from the index
+        final int ordinal; // the position in the index, or -1 for a new entry
+
+        Record(String relativePath, int depth, byte type, long size, long mtime, PathEntry entry, int ordinal) {
+            this.relativePath = relativePath;
+            this.depth = depth;
+            this.type = type;
+            this.size = size;
+            this.mtime = mtime;
+            this.entry = entry;
+            this.ordinal = ordinal;
+        }
+
+        static Record of(String relativePath, int depth, PathEntry entry) {
+            byte type = 0;
+            if (entry.isDirectory())
+                type |= TYPE_DIRECTORY;
+            else if (entry.isRegularFile())
+                type |= TYPE_REGULAR_FILE;
+            else if (entry.exists())
+                type |= TYPE_OTHER;
+            if (entry.isSymbolicLink())
+                type |= TYPE_SYMBOLIC_LINK;
+            return new Record(relativePath, depth, type, entry.size(), entry.mtime(), entry, -1);
+        }
+
+        Record relisted() {
+            return new Record(relativePath, depth, (byte) (type | TYPE_RELISTED), size, mtime, entry, ordinal);
+        }
+
+        Record detached() {
+            return (entry == null) ? this : new Record(relativePath, depth, type, size, mtime, null, ordinal);
+        }
+
+        Record withOrdinal(int ordinal) {
+            return new Record(relativePath, depth, type, size, mtime, entry, ordinal);
+        }
+
+        boolean isRelisted() {
+            return (type & TYPE_RELISTED) != 0;
+        }
+
+        boolean isDirectory() {
+            return (type & TYPE_DIRECTORY) != 0;
+        }
+
+        String name() {
+            return relativePath.substring(relativePath.lastIndexOf(File.separatorChar) + 1);
+        }
+
+        Path path(Path root) {
+            if (entry != null)
+                return entry.getPath();
+            return relativePath.isEmpty() ? root : root.resolve(relativePath);
+        }
+
+        PathEntry toEntry(Path root) {
+            if (entry != null)
+                return entry;
+            return new PathEntry(path(root), new IndexedAttributes(this), (type & TYPE_SYMBOLIC_LINK) != 0);
+        }
+    }
+
+    /**
+     * The attributes from a record.
+     */
+    static final class IndexedAttributes implements BasicFileAttributes {
+        private final Record r;
+
+        IndexedAttributes(Record r) {
+            this.r = r;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return FileTime.fromMillis(r.mtime);
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return lastModifiedTime();
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return (r.type & TYPE_REGULAR_FILE) != 0;
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return (r.type & TYPE_DIRECTORY) != 0;
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return (r.type & TYPE_SYMBOLIC_LINK) != 0;
+        }
+
+        @Override
+        public boolean isOther() {
+            return (r.type & TYPE_OTHER) != 0;
+        }
+
+        @Override
+        public long size() {
+            return r.size;
+        }
+
+        @Override
+        public Object fileKey() {
+            return null;
+        }
+    }
+
+    /**
+     * A sequential reader of records on the memory mapped file.
+     * The file is mapped by windows, so that it can be larger than 2GB.
+     */
+    static final class Reader implements Closeable {
+        private static final long WINDOW_SIZE = 1L << 28;
+        private static final int MAX_RECORD_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private final long fileSize;
+        private long windowStart;
+        private MappedByteBuffer buffer;
+        private byte[] path;
+        private int pathLength;
+        private Record peeked;
+        private boolean ended;
+        private int ordinal;
+        private TrigramIndex.Filter filter; // null: no records are skipped
+        private int skippableDepth; // the files deeper than this may be skipped
+
+        Reader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+            this.path = new byte[256];
+            map(0L);
+            // skips the header
+            Header.read(new DataInputStream(new InputStream() {
+                @Override
+                public int read() {
+                    return buffer.get() & 0xFF;
+                }
+            }));
+        }
+
+        private void map(long position) throws IOException {
+            this.windowStart = position;
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position));
+        }
+
+        Record peek() {
+            if (peeked == null && !ended)
+                try {
+                    peeked = read();
+                    ended = peeked == null;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            return peeked;
+        }
+
+        Record next() {
+            Record r = peek();
+            peeked = null;
+            return r;
+        }
+
+        /**
+         * Skips the files that the filter does not accept, before decoding their paths.
+         * The directories are always read, because they are needed to refresh the index.
+         * @param filter the filter
+         */
+        void skipUnaccepted(TrigramIndex.Filter filter) {
+            this.filter = filter;
+            this.skippableDepth = Integer.MAX_VALUE;
+        }
+
+        /**
+         * Sets the depth of the files that can be skipped from the next read.
+         * The files at or above the depth are compared with the listings of the changed directories.
+         * @param depth the depth
+         */
+        void setSkippableDepth(int depth) {
+            this.skippableDepth = depth;
+        }
+
+        private Record read() throws IOException {
+            for (;;) {
+                if (buffer.remaining() < MAX_RECORD_SIZE && windowStart + buffer.limit() < fileSize)
+                    map(windowStart + buffer.position());
+                final long depthPlus1 = readVarLong(buffer);
+                if (depthPlus1 == 0L)
+                    return null;
+                final int shared = (int) readVarLong(buffer);
+                final int suffixLength = (int) readVarLong(buffer);
+                if (path.length < shared + suffixLength)
+                    path = Arrays.copyOf(path, Math.max(path.length * 2, shared + suffixLength));
+                buffer.get(path, shared, suffixLength);
+                pathLength = shared + suffixLength;
+                final byte type = buffer.get();
+                final long size = readVarLong(buffer);
+                final long mtime = buffer.getLong();
+                final int depth = (int) depthPlus1 - 1;
+                final int ord = ordinal++;
+                if (filter != null && depth > skippableDepth && (type & TYPE_DIRECTORY) == 0
+                    && !filter.accepts(depth, ord))
+                    continue;
+                return new Record(new String(path, 0, pathLength, UTF_8), depth, type, size, mtime, null, ord);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn(() -> "", e);
+            }
+        }
+    }
+
+    /**
+     * Merges the records in the index with the current state of the file system, in the order of the index.
+     * The directories whose mtime has changed are listed again, and each of them makes a frame.
+     * Without an index, all entries are walked as new ones.
+     */
+    static final class Refresher {
+        private final Path root;
+        private final PathEntry rootEntry;
+        private final Reader reader; // null: no index
+        private final TraversalOptions options;
+        private final int maxDepth;
+        private final Deque<Frame> frames;
+        private int skipDepth; // -1: not skipping
+
+        Refresher(Path root, Reader reader, TraversalOptions options) {
+            this.root = root;
+            this.rootEntry = new PathEntry(root);
+            this.reader = reader;
+            this.options = options;
+            this.maxDepth = options.maxDepth(root);
+            this.frames = new ArrayDeque<>();
+            this.skipDepth = -1;
+            if (reader == null)
+                frames.push(new Frame(-1, "", Collections.singletonList(rootEntry), false));
+        }
+
+        Record next() {
+            for (;;) {
+                if (reader != null) {
+                    final Frame f = frames.peek();
+                    reader.setSkippableDepth((f == null) ? 0 : f.depth + 1);
+                }
+                Record r = (reader == null) ? null : reader.peek();
+                if (r != null && skipDepth >= 0) {
+                    if (r.depth > skipDepth) {
+                        reader.next();
+                        continue;
+                    }
+                    skipDepth = -1;
+                }
+                final Frame top = frames.peek();
+                if (top != null && (r == null || r.depth <= top.depth + 1)) {
+                    // the new entries of the top frame come before r
+                    if (top.hasNext() && (r == null || r.depth <= top.depth || top.peekName().compareTo(r.name()) < 0))
+                        return visitNew(top, top.next());
+                    if (r == null || r.depth <= top.depth) {
+                        frames.pop();
+                        continue;
+                    }
+                    reader.next();
+                    if (!top.hasNext() || !top.peekName().equals(r.name())) {
+                        skipDepth = r.depth; // removed
+                        continue;
+                    }
+                    final PathEntry current = top.next();
+                    if (!current.isDirectory() || !r.isDirectory()) {
+                        if (r.isDirectory())
+                            skipDepth = r.depth;
+                        return visitNew(top, current);
+                    }
+                    final boolean lossy = top.lossy || !roundTrips(current);
+                    final Record x = visitIndexed(Record.of(r.relativePath, r.depth, current).withOrdinal(r.ordinal), r, lossy);
+                    if (x != null)
+                        return x;
+                    continue;
+                }
+                if (r == null)
+                    return null;
+                reader.next();
+                final Record x = visitIndexed(r, r, false);
+                if (x != null)
+                    return x;
+            }
+        }
+
+        /**
+         * Visits an entry in the index.
+         * @param r the record
+         * @param indexed the record in the index
+         * @param lossy whether the path of the entry cannot be restored from its string
+         * @return the record, or null if skipped
+         */
+        private Record visitIndexed(Record r, Record indexed, boolean lossy) {
+            if (r.depth > maxDepth) {
+                skipDepth = r.depth;
+                return null;
+            }
+            final Path path = r.path(root);
+            if (r.depth > 0 && options.exclusiveFilter.matches(path)) {
+                skipDepth = r.depth;
+                return null;
+            }
+            if (!r.isDirectory())
+                return r;
+            if (r.depth >= maxDepth || !options.subtreeFilter.test(path)) {
+                skipDepth = r.depth;
+                return r;
+            }
+            if (options.ignoreFiles != null)
+                options.ignoreFiles.load(path);
+            final PathEntry current = (r.entry == null) ? new PathEntry(path) : r.entry;
+            if (!current.isDirectory()) {
+                skipDepth = r.depth; // removed after the parent was read
+                return r;
+            }
+            if (current.mtime() == indexed.mtime && !indexed.isRelisted())
+                return r;
+            log.debug(() -> "changed: " + path);
+            final List<PathEntry> entries = list(path);
+            frames.push(new Frame(r.depth, r.relativePath, entries, lossy));
+            final Record x = (r.entry == null) ? Record.of(r.relativePath, r.depth, current).withOrdinal(r.ordinal) : r;
+            return (lossy || !allRoundTrip(entries)) ? x.relisted() : x;
+        }
+
+        private Record visitNew(Frame frame, PathEntry entry) {
+            final String name = (frame.depth < 0) ? "" : entry.name();
+            final String relativePath = frame.relativePath.isEmpty() ? name : frame.relativePath + File.separator + name;
+            final int depth = frame.depth + 1;
+            final Record r = Record.of(relativePath, depth, entry);
+            if (!options.descends(rootEntry, entry, depth))
+                return r;
+            if (options.ignoreFiles != null)
+                options.ignoreFiles.load(entry.getPath());
+            final boolean lossy = frame.lossy || (depth > 0 && !roundTrips(entry));
+            final List<PathEntry> entries = list(entry.getPath());
+            frames.push(new Frame(depth, relativePath, entries, lossy));
+            return (lossy || !allRoundTrip(entries)) ? r.relisted() : r;
+        }
+
+        private List<PathEntry> list(Path dir) {
+            List<PathEntry> a = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path x : stream) {
+                    PathEntry entry = new PathEntry(x);
+                    if (!options.skips(dir, entry))
+                        a.add(entry);
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                PathIterator.err(e, dir, options.ignoreAccessDenied);
+            }
+            a.sort(Comparator.comparing(PathEntry::name));
+            return a;
+        }
+    }
+
+    private static final class Frame {
+        final int depth; // of the directory
+        final String relativePath;
+        final List<PathEntry> entries; // sorted by name
+        final boolean lossy; // the path of the directory cannot be restored from its string
+        int index;
+
+        Frame(int depth, String relativePath, List<PathEntry> entries, boolean lossy) {
+            this.depth = depth;
+            this.relativePath = relativePath;
+            this.entries = entries;
+            this.lossy = lossy;
+        }
+
+        boolean hasNext() {
+            return index < entries.size();
+        }
+
+        String peekName() {
+            return entries.get(index).name();
+        }
+
+        PathEntry next() {
+            return entries.get(index++);
+        }
+    }
+
+}
@@ -3,41 +3,66 @@ package potaufeu;
 import java.io.*;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.*;
 
-final class PathIterator implements Iterator<Path> {
+final class PathIterator implements Iterator<PathEntry> {
 
-    private final int rootDepth;
-    private final int maxDepth;
-    private final Queue<Path> q;
-    private final Queue<Path> dirs;
-    private final boolean ignoreAccessDenied;
-    private final PathMatcher exclusiveFilter;
+    private static final int SPLIT_THRESHOLD = 1_024;
+
+    private final TraversalOptions options;
+    private final Queue<PathEntry> q;
+    private final Queue<Dir> dirs;
+    private final Queue<Future<Listing>> listings;
 
     PathIterator(Path root, int maxDepth, boolean ignoreAccessDenied) {
         this(root, maxDepth, ignoreAccessDenied, Optional.empty());
     }
 
     PathIterator(Path root, int maxDepth, boolean ignoreAccessDenied, Optional<PathMatcher> optExclusiveFilter) {
-        this.rootDepth = root.getNameCount();
-        this.maxDepth = maxDepth;
+        this(root, new TraversalOptions(maxDepth, ignoreAccessDenied, optExclusiveFilter));
+    }
+
+    PathIterator(Path root, TraversalOptions options) {
+        this(Collections.singletonList(root), options);
+    }
+
+    /**
+     * Creates an iterator which walks the roots together.
+     * The directories of all roots are in the same queues,
+     * so that they are listed concurrently by prefetching or splitting.
+     * @param roots the roots
+     * @param options the options
+     */
+    PathIterator(List<Path> roots, TraversalOptions options) {
+        this.options = options;
         this.q = new LinkedList<>();
         this.dirs = new LinkedList<>();
-        this.ignoreAccessDenied = ignoreAccessDenied;
-        this.exclusiveFilter = optExclusiveFilter.orElse(path -> false);
-        q.offer(root);
-        dirs.offer(root);
+        this.listings = new LinkedList<>();
+        for (Path root : roots) {
+            PathEntry rootEntry = new PathEntry(root);
+            q.offer(rootEntry);
+            if (options.descends(rootEntry, rootEntry, 0))
+                dirs.offer(new Dir(root, 0, rootEntry));
+        }
+    }
+
+    private PathIterator(PathIterator parent, Queue<PathEntry> q, Queue<Dir> dirs, Queue<Future<Listing>> listings) {
+        this.options = parent.options;
+        this.q = q;
+        this.dirs = dirs;
+        this.listings = listings;
     }
 
     @Override
     public boolean hasNext() {
-        if (!dirs.isEmpty())
+        if (!dirs.isEmpty() || !listings.isEmpty())
             traverse(128); // do not refactor this unless you can clearly optimize
         return !q.isEmpty();
     }
 
     @Override
-    public Path next() {
+    public PathEntry next() {
         return q.poll();
     }
 
@@ -55,32 +80,131 @@ final class PathIterator implements Iterator<Path> {
 
     static Stream<Path> streamOf(Path root, int maxDepth, boolean ignoreAccessDenied,
             Optional<PathMatcher> optExclusiveFilter) {
-        PathIterator pathIterator = new PathIterator(root, maxDepth, ignoreAccessDenied, optExclusiveFilter);
-        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pathIterator, 0), false);
+        TraversalOptions options = new TraversalOptions(maxDepth, ignoreAccessDenied, optExclusiveFilter);
+        return entries(root, options).map(PathEntry::getPath);
+    }
+
+    static Stream<PathEntry> entries(Path root, TraversalOptions options) {
+        return entries(Collections.singletonList(root), options);
+    }
+
+    static Stream<PathEntry> entries(List<Path> roots, TraversalOptions options) {
+        if (options.depthFirst)
+            return roots.stream().map(root -> DepthFirstPathIterator.entries(root, options)).reduce(Stream::concat)
+                    .orElseGet(Stream::empty);
+        PathIterator pathIterator = new PathIterator(roots, options);
+        return StreamSupport.stream(new PathSpliterator(pathIterator), options.parallel);
     }
 
     void traverse(int requiredSize) {
+        final ExecutorService executor = options.executor;
         while (q.size() < requiredSize) {
-            if (dirs.isEmpty())
-                break;
-            Path dir = dirs.poll();
-            if (exclusiveFilter.matches(dir))
+            if (executor == null) {
+                if (dirs.isEmpty())
+                    break;
+                accept(list(dirs.poll()));
                 continue;
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
-                stream.forEach(x -> {
-                    if ((x.getNameCount() - rootDepth) <= maxDepth && !exclusiveFilter.matches(x)) {
-                        q.offer(x);
-                        if (Files.isDirectory(x))
-                            dirs.offer(x);
-                    }
-                });
-            } catch (IOException e) {
-                err(e, dir);
             }
+            while (listings.size() < options.prefetchSize && !dirs.isEmpty()) {
+                final Dir dir = dirs.poll();
+                listings.offer(executor.submit(() -> list(dir)));
+            }
+            if (listings.isEmpty())
+                break;
+            accept(await(listings.poll()));
+        }
+    }
+
+    private Listing list(Dir dir) {
+        List<PathEntry> a = new ArrayList<>();
+        final Path path = dir.path;
+        if (options.exclusiveFilter.matches(path))
+            return new Listing(dir, a, null);
+        if (options.ignoreFiles != null)
+            options.ignoreFiles.load(path);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            stream.forEach(x -> {
+                PathEntry entry = new PathEntry(x);
+                if (!options.skips(path, entry)) {
+                    entry.isDirectory(); // reads the attributes here
+                    a.add(entry);
+                }
+            });
+        } catch (IOException e) {
+            return new Listing(dir, a, e);
+        }
+        return new Listing(dir, a, null);
+    }
+
+    private void accept(Listing listing) {
+        final int depth = listing.dir.depth + 1;
+        final PathEntry root = listing.dir.root;
+        for (PathEntry entry : listing.entries) {
+            q.offer(entry);
+            if (options.descends(root, entry, depth))
+                dirs.offer(new Dir(entry.getPath(), depth, root));
+        }
+        if (listing.error != null)
+            err(listing.error, listing.dir.path);
+    }
+
+    private static Listing await(Future<Listing> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
         }
     }
 
+    /**
+     * Splits off a prefix of the remaining work into a new iterator.
+     * Pending directories are divided first, so that each iterator walks its own subtrees.
+     * The new iterator takes the buffered entries, the listings in progress and the first half of the directories,
+     * so that its entries precede all entries of this iterator.
+     * If there is only one pending directory, it is listed in advance to find more.
+     * @return the new iterator, or null if this iterator cannot be split
+     */
+    PathIterator trySplit() {
+        while (listings.isEmpty() && dirs.size() == 1 && q.size() < SPLIT_THRESHOLD)
+            accept(list(dirs.poll()));
+        if (dirs.size() > 1)
+            return new PathIterator(this, drain(q), half(dirs), drain(listings));
+        if (dirs.isEmpty() && listings.isEmpty() && q.size() >= SPLIT_THRESHOLD)
+            return new PathIterator(this, half(q), new LinkedList<>(), new LinkedList<>());
+        return null;
+    }
+
+    private static <T> Queue<T> half(Queue<T> src) {
+        Queue<T> a = new LinkedList<>();
+        for (int n = src.size() / 2; n > 0; n--)
+            a.offer(src.poll());
+        return a;
+    }
+
+    private static <T> Queue<T> drain(Queue<T> src) {
+        Queue<T> a = new LinkedList<>(src);
+        src.clear();
+        return a;
+    }
+
+    boolean hasPendingDirectories() {
+        return !dirs.isEmpty() || !listings.isEmpty();
+    }
+
+    int bufferedSize() {
+        return q.size();
+    }
+
     void err(Exception e, Path path) {
+        err(e, path, options.ignoreAccessDenied);
+    }
+
+    static void err(Exception e, Path path, boolean ignoreAccessDenied) {
         final String msg;
         if (e instanceof AccessDeniedException) {
             if (ignoreAccessDenied)
@@ -94,4 +218,28 @@ final class PathIterator implements Iterator<Path> {
         System.err.printf("potf: '%s': %s%n", path, msg);
     }
 
+    private static final class Dir {
+        final Path path;
+        final int depth; // from the root
+        final PathEntry root;
+
+        Dir(Path path, int depth, PathEntry root) {
+            this.path = path;
+            this.depth = depth;
+            this.root = root;
+        }
+    }
+
+    private static final class Listing {
+        final Dir dir;
+        final List<PathEntry> entries;
+        final IOException error;
+
+        Listing(Dir dir, List<PathEntry> entries, IOException error) {
+            this.dir = dir;
+            this.entries = entries;
+            this.error = error;
+        }
+    }
+
 }
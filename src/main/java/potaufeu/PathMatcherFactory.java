@@ -1,6 +1,5 @@
 package potaufeu;
 
-import java.io.*;
 import java.nio.file.*;
 import java.time.*;
 import java.util.*;
@@ -29,20 +28,49 @@ public final class PathMatcherFactory {
 
     public static Optional<PathMatcher> createMatcherByPath(OptionSet opts) {
         log.debug(() -> "createMatcherByPath: patterns=<" + opts.getPathPatterns() + ">");
-        return createFromStringPatterns(opts.getPathPatterns(), Object::toString);
+        List<String> patterns = opts.getPathPatterns();
+        if (patterns.stream().filter(x -> !x.isEmpty()).count() > 0) {
+            StringMatchingPredicate matcher = StringMatchingPredicate.create(patterns);
+            return Optional.of(new EntryMatcher() {
+                @Override
+                public boolean matches(PathEntry entry) {
+                    return matcher.matches(entry.getPath().toString());
+                }
+
+                @Override
+                public boolean mayMatchBelow(Path dir) {
+                    // the paths of entries below the directory start with this, e.g. "/" for the root
+                    final String s = dir.toString();
+                    final String separator = dir.getFileSystem().getSeparator();
+                    return matcher.mayMatchPrefix(s.isEmpty() || s.endsWith(separator) ? s : s + separator);
+                }
+            });
+        }
+        return Optional.empty();
     }
 
     public static Optional<PathMatcher> createMatcherByName(OptionSet opts) {
         log.debug(() -> "createMatcherByName: patterns=<" + opts.getNamePatterns() + ">");
-        return createFromStringPatterns(opts.getNamePatterns(), FileAttributeFormatter::name);
+        return NameMatcher.compile(opts.getNamePatterns(), Collections.emptyList()).map(x -> x);
+    }
+
+    /**
+     * Returns the matcher of both the name patterns and the extensions, which tests the name once.
+     * @param opts
+     * @return the matcher, or empty if no patterns
+     */
+    public static Optional<PathMatcher> createMatcherByNameAndExtension(OptionSet opts) {
+        log.debug(() -> "createMatcherByNameAndExtension: patterns=<" + opts.getNamePatterns() + ">, extensions=<"
+                        + opts.getExtensionPatterns() + ">");
+        return NameMatcher.compile(opts.getNamePatterns(), opts.getExtensionPatterns()).map(x -> x);
     }
 
     public static Optional<PathMatcher> createMatcherByExclusion(OptionSet opts) {
         log.debug(() -> "createMatcherByExclusion: patterns=<" + opts.getExclusionPatterns() + ">");
         // @formatter:off
-        return opts.getExclusionPatterns().stream()
-                .map(StringMatchingPredicate::create)
-                .reduce(StringMatchingPredicate::or)
+        return Optional.of(opts.getExclusionPatterns())
+                .filter(x -> !x.isEmpty())
+                .map(StringMatchingPredicate::any)
                 .map(x -> path -> !x.matches(path.toString()));
         // @formatter:on
     }
@@ -87,14 +115,7 @@ public final class PathMatcherFactory {
 
     static Optional<PathMatcher> extensionMatcher(List<String> patterns) {
         log.debug(() -> "extensionMatcher(plural): pattern=<" + patterns + ">");
-        if (patterns.isEmpty())
-            return Optional.empty();
-        final String pattern;
-        if (patterns.size() == 1)
-            pattern = "(?i).*\\." + patterns.get(0);
-        else
-            pattern = String.format("(?i).*\\.(%s)", String.join("|", patterns));
-        return Optional.of(path -> FileAttributeFormatter.name(path).matches(pattern));
+        return NameMatcher.compile(Collections.emptyList(), patterns).map(x -> x);
     }
 
     @Deprecated
@@ -113,31 +134,24 @@ public final class PathMatcherFactory {
     public static List<PathMatcher> fileTypeMatchers(OptionSet opts) {
         List<PathMatcher> a = new ArrayList<>();
         if (opts.isFile())
-            a.add(Files::isRegularFile);
+            a.add((EntryMatcher) PathEntry::isRegularFile);
         return a;
     }
 
     public static List<PathMatcher> fileContentTypeMatchers(OptionSet opts) {
         List<PathMatcher> a = new ArrayList<>();
         if (opts.isText())
-            a.add(path -> isText(path));
+            a.add((EntryMatcher) entry -> isText(entry));
+        if (!opts.getContentTypes().isEmpty()) {
+            final Set<ContentType> types = ContentType.parse(opts.getContentTypes());
+            log.debug(() -> "added content type matcher: " + types);
+            a.add((EntryMatcher) entry -> types.contains(entry.contentType()));
+        }
         return a;
     }
 
-    private static boolean isText(Path path) {
-        if (!Files.isRegularFile(path))
-            return false;
-        // experimental
-        try (Stream<String> stream = Files.lines(path)) {
-            @SuppressWarnings("unused")
-            long n = stream.limit(4096).count();
-            return true;
-        } catch (UncheckedIOException e) {
-            // ignore
-        } catch (Exception e) {
-            System.err.printf("warning: %s at isText, file=%s%n", e, path);
-        }
-        return false;
+    private static boolean isText(PathEntry entry) {
+        return entry.contentKind() == TextSniffer.Kind.TEXT;
     }
 
     public static List<PathMatcher> fileSizeMatchers(OptionSet opts) {
@@ -149,13 +163,13 @@ public final class PathMatcherFactory {
         if (pattern.startsWith("-")) {
             final long max = FileSize.toByteSize(pattern.substring(1));
             log.debug(() -> "added file size matcher: x <= " + max);
-            return path -> getFileSize(path) <= max;
+            return (EntryMatcher) entry -> entry.size() <= max;
         }
         else if (!pattern.contains("-") || pattern.endsWith("-")) {
             String ptn0 = (pattern.endsWith("-")) ? pattern.substring(0, pattern.length() - 1) : pattern;
             final long min = FileSize.toByteSize(ptn0);
             log.debug(() -> "added file size matcher: " + min + " <= x");
-            return path -> min <= getFileSize(path);
+            return (EntryMatcher) entry -> min <= entry.size();
         }
         final int index = pattern.indexOf('-');
         assert index > 0;
@@ -164,58 +178,57 @@ public final class PathMatcherFactory {
         if (min > max)
             throw new IllegalArgumentException("min > max: " + pattern);
         log.debug(() -> "added file size matcher: " + min + " <= x <= " + max);
-        return path -> {
-            long size = getFileSize(path);
+        return (EntryMatcher) entry -> {
+            long size = entry.size();
             return min <= size && size <= max;
         };
     }
 
-    private static long getFileSize(Path path) {
-        try {
-            return Files.size(path);
-        } catch (IOException e) {
-            return -1L;
-        }
-    }
-
     public static List<PathMatcher> ctimeMatchers(OptionSet opts) {
         log.debug(() -> "ctimeMatchers: patterns=<" + opts.getCtimePatterns() + ">");
         return toPathMatchers(opts.getCtimePatterns(),
-            x -> fileTimeMatcher(x, FileAttributeFormatter::ctime, opts.createdTime));
+            x -> entryTimeMatcher(x, PathEntry::ctime, opts.createdTime));
     }
 
     public static List<PathMatcher> mtimeMatchers(OptionSet opts) {
         log.debug(() -> "mtimeMatchers: patterns=<" + opts.getMtimePatterns() + ">");
         return toPathMatchers(opts.getMtimePatterns(),
-            x -> fileTimeMatcher(x, FileAttributeFormatter::mtime, opts.createdTime));
+            x -> entryTimeMatcher(x, PathEntry::mtime, opts.createdTime));
     }
 
     public static List<PathMatcher> atimeMatchers(OptionSet opts) {
         log.debug(() -> "atimeMatchers: patterns=<" + opts.getAtimePatterns() + ">");
         return toPathMatchers(opts.getAtimePatterns(),
-            x -> fileTimeMatcher(x, FileAttributeFormatter::atime, opts.createdTime));
+            x -> entryTimeMatcher(x, PathEntry::atime, opts.createdTime));
     }
 
     public static PathMatcher fileTimeMatcher(String pattern, ToLongFunction<Path> f2millis, long now) {
+        LongPredicate range = fileTimeRange(pattern, now);
+        return file -> range.test(f2millis.applyAsLong(file));
+    }
+
+    public static EntryMatcher entryTimeMatcher(String pattern, ToLongFunction<PathEntry> f2millis, long now) {
+        LongPredicate range = fileTimeRange(pattern, now);
+        return entry -> range.test(f2millis.applyAsLong(entry));
+    }
+
+    private static LongPredicate fileTimeRange(String pattern, long now) {
         final String prefix = "fileTimeMatcher: ";
         if (!pattern.contains("-")) {
             final long min = TimePoint.millis(pattern, now);
             final long max = TimePoint.millis(pattern, now, true);
             log.debug(() -> prefix + toDateTime(min) + " <= x <= " + toDateTime(max));
-            return file -> {
-                long t = f2millis.applyAsLong(file);
-                return min <= t && t <= max;
-            };
+            return t -> min <= t && t <= max;
         }
         else if (pattern.endsWith("-")) {
             final long min = TimePoint.millis(pattern.substring(0, pattern.length() - 1), now);
             log.debug(() -> prefix + toDateTime(min) + " <= x");
-            return file -> min <= f2millis.applyAsLong(file);
+            return t -> min <= t;
         }
         else if (pattern.startsWith("-")) {
             final long max = TimePoint.millis(pattern.substring(1), now, true);
             log.debug(() -> prefix + ": x <= " + toDateTime(max));
-            return file -> f2millis.applyAsLong(file) <= max;
+            return t -> t <= max;
         }
         final int index = pattern.indexOf('-');
         assert index > 0;
@@ -224,10 +237,7 @@ public final class PathMatcherFactory {
         if (min > max)
             throw new IllegalArgumentException("min > max: " + pattern);
         log.debug(() -> prefix + ": " + toDateTime(min) + " <= x <= " + toDateTime(max));
-        return file -> {
-            long t = f2millis.applyAsLong(file);
-            return min <= t && t <= max;
-        };
+        return t -> min <= t && t <= max;
     }
 
     private static LocalDateTime toDateTime(long millis) {
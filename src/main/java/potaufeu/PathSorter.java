@@ -10,7 +10,15 @@ public interface PathSorter extends Comparator<Path> {
         return sortExprs.stream().map(x -> createComparator(x)).reduce((x, y) -> x.thenComparing(y));
     }
 
+    public static Optional<Comparator<PathEntry>> getEntrySorter(List<String> sortExprs) {
+        return sortExprs.stream().map(x -> createEntryComparator(x)).reduce((x, y) -> x.thenComparing(y));
+    }
+
     static Comparator<Path> createComparator(String expr) {
+        return Comparator.comparing(PathEntry::new, createEntryComparator(expr));
+    }
+
+    static Comparator<PathEntry> createEntryComparator(String expr) {
         final boolean desc = expr.startsWith("_");
         final String key;
         if (desc)
@@ -19,20 +27,26 @@ public interface PathSorter extends Comparator<Path> {
             key = expr.substring(1);
         else
             key = expr;
-        Comparator<Path> tmp;
+        Comparator<PathEntry> tmp;
         switch (key) {
             case "size":
+                tmp = Comparator.comparingLong(PathEntry::size);
+                break;
             case "ctime":
+                tmp = Comparator.comparingLong(PathEntry::ctime);
+                break;
             case "mtime":
+                tmp = Comparator.comparingLong(PathEntry::mtime);
+                break;
             case "atime":
-                tmp = Comparator.comparing(FileAttributeFormatter.toLongLambda(key));
+                tmp = Comparator.comparingLong(PathEntry::atime);
                 break;
             case "name": {
-                tmp = Comparator.comparing(FileAttributeFormatter::name);
+                tmp = Comparator.comparing(PathEntry::name);
             }
                 break;
             case "iname":
-                tmp = Comparator.comparing(x -> FileAttributeFormatter.name(x).toLowerCase());
+                tmp = Comparator.comparing(x -> x.name().toLowerCase());
                 break;
             default:
                 throw new IllegalArgumentException("unknown sortkey: " + expr);
@@ -0,0 +1,46 @@
+package potaufeu;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * A splittable spliterator over PathIterator.
+ * Each split takes over a part of the pending subdirectories,
+ * so a parallel stream can walk subtrees on several threads with work stealing.
+ * The split-off part is always a prefix of the encounter order,
+ * so that <code>forEachOrdered</code> keeps the order in a parallel stream.
+ */
+final class PathSpliterator implements Spliterator<PathEntry> {
+
+    private final PathIterator iterator;
+
+    PathSpliterator(PathIterator iterator) {
+        this.iterator = iterator;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super PathEntry> action) {
+        if (!iterator.hasNext())
+            return false;
+        action.accept(iterator.next());
+        return true;
+    }
+
+    @Override
+    public Spliterator<PathEntry> trySplit() {
+        PathIterator x = iterator.trySplit();
+        return (x == null) ? null : new PathSpliterator(x);
+    }
+
+    @Override
+    public long estimateSize() {
+        // unknown while there are directories to list
+        return iterator.hasPendingDirectories() ? Long.MAX_VALUE : iterator.bufferedSize();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+}
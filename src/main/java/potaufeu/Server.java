@@ -0,0 +1,265 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static potaufeu.Messages.message;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Runs the commands sent by {@link Launcher} in this process, to save the startup of the JVM and the libraries.
+ *
+ * <p>The server listens on a port of the loopback address, and writes the port and a random token
+ * into the server file, which is readable only by the owner.
+ * The server sends the ready frame when it has accepted a connection, then the client sends the request,
+ * or the busy frame if it is running another command, and then the client runs the command itself.
+ * A request has the token, the working directory, the charset and the arguments of the client,
+ * and the response has the frames of the standard output and error, followed by the end frame
+ * which tells whether the command has been run.
+ * The commands are run one by one, because the standard streams are replaced while running.</p>
+ *
+ * <p>The paths and the path patterns are relative to the working directory of the process,
+ * which cannot be changed, and the files are decoded in its default charset,
+ * so a command from another directory (or with another charset) is run by the client itself,
+ * as is the interactive mode, the daemon, and the server itself.
+ * Each directory may have its own server.</p>
+ */
+final class Server implements Runnable {
+
+    private static final Log log = Log.logger(Server.class);
+
+    static final int END = 0;
+    static final int STDOUT = 1;
+    static final int STDERR = 2;
+    static final int READY = 3;
+    static final int BUSY = 4;
+
+    private static final int REQUEST_TIMEOUT = 10_000;
+
+    private final Path file;
+    private final String token;
+    private final String directory;
+
+    private ServerSocket serverSocket;
+    final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * @param file the server file
+     */
+    Server(Path file) {
+        this.file = file;
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes)
+            sb.append(String.format("%02x", b & 0xFF));
+        this.token = sb.toString();
+        this.directory = Paths.get("").toAbsolutePath().toString();
+    }
+
+    String getDirectory() {
+        return directory;
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Listens on a port, and writes the server file.
+     * @throws IOException
+     */
+    void start() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        // a temporary file is created with the permissions only for the owner
+        Path tmp = Files.createTempFile(file.getParent(), "server", ".tmp");
+        Files.write(tmp, Arrays.asList(String.valueOf(getPort()), token), UTF_8);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Accepts the requests until closed.
+     * A command is run on the worker thread, and the requests while running are answered as busy.
+     */
+    @Override
+    public void run() {
+        ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+            Thread th = new Thread(r, "potf-server");
+            th.setDaemon(true);
+            return th;
+        });
+        try {
+            for (;;) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (SocketException e) {
+                    if (serverSocket.isClosed())
+                        break;
+                    log.warn(() -> "server", e);
+                    continue;
+                } catch (IOException e) {
+                    log.warn(() -> "server", e);
+                    continue;
+                }
+                if (running.compareAndSet(false, true))
+                    worker.execute(() -> {
+                        try (Socket x = socket) {
+                            handle(x);
+                        } catch (IOException e) {
+                            log.warn(() -> "server", e);
+                        } finally {
+                            running.set(false);
+                        }
+                    });
+                else
+                    reject(socket);
+            }
+        } finally {
+            worker.shutdown();
+        }
+        log.info(() -> "server stopped");
+    }
+
+    private static void reject(Socket socket) {
+        try (Socket x = socket) {
+            x.getOutputStream().write(BUSY);
+        } catch (IOException e) {
+            log.debug(() -> "reject: " + e);
+        }
+    }
+
+    /**
+     * Stops accepting, and removes the server file unless it has been replaced by another server.
+     */
+    void close() {
+        try {
+            serverSocket.close();
+            if (Files.readAllLines(file, UTF_8).contains(token))
+                Files.delete(file);
+        } catch (IOException e) {
+            log.warn(() -> "close: " + file, e);
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        dos.writeByte(READY);
+        dos.flush();
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        if (!MessageDigest.isEqual(dis.readUTF().getBytes(UTF_8), token.getBytes(UTF_8))) {
+            log.warn(() -> "invalid token from " + socket.getRemoteSocketAddress());
+            return;
+        }
+        final String clientDirectory = dis.readUTF();
+        final String charset = dis.readUTF();
+        String[] args = new String[dis.readInt()];
+        for (int i = 0; i < args.length; i++)
+            args[i] = dis.readUTF();
+        socket.setSoTimeout(0);
+        log.info(() -> "request: " + Arrays.asList(args));
+        final boolean run = clientDirectory.equals(directory) && charset.equals(Charset.defaultCharset().name())
+                            && execute(args, dos);
+        // the next command may start while the client reads the end
+        running.set(false);
+        dos.writeByte(END);
+        dos.writeBoolean(run);
+        dos.flush();
+    }
+
+    /*
+     * Runs the command in the same way as App.main, with the standard streams of the client.
+     */
+    private static boolean execute(String[] args, DataOutputStream dos) {
+        final OptionSet opts;
+        try {
+            opts = OptionSet.parseArguments(args);
+        } catch (Exception e) {
+            return false; // the client reports it
+        }
+        if (opts.isInteractive() || opts.isDaemon() || opts.isServer())
+            return false;
+        final PrintStream stdout = System.out;
+        final PrintStream stderr = System.err;
+        final InputStream stdin = System.in;
+        final PrintStream out = new PrintStream(new FrameOutputStream(dos, STDOUT), true);
+        final PrintStream err = new PrintStream(new FrameOutputStream(dos, STDERR), true);
+        System.setOut(out);
+        System.setErr(err);
+        System.setIn(new ByteArrayInputStream(new byte[0]));
+        try {
+            new App().runCommand(opts);
+        } catch (Throwable e) {
+            log.error(() -> "(server)", e);
+            err.println(message("e.0", e.getMessage()));
+        } finally {
+            out.flush();
+            err.flush();
+            System.setOut(stdout);
+            System.setErr(stderr);
+            System.setIn(stdin);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the data as frames of a stream.
+     * The frames are written on each flush, and the streams share the connection.
+     */
+    static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream dos;
+        private final int kind;
+        private final byte[] buf = new byte[8192];
+        private int count;
+
+        FrameOutputStream(DataOutputStream dos, int kind) {
+            this.dos = dos;
+            this.kind = kind;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (count == buf.length)
+                writeFrame();
+            buf[count++] = (byte) b;
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buf.length)
+                    writeFrame();
+                final int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            writeFrame();
+        }
+
+        private void writeFrame() throws IOException {
+            if (count == 0)
+                return;
+            synchronized (dos) {
+                dos.writeByte(kind);
+                dos.writeInt(count);
+                dos.write(buf, 0, count);
+                dos.flush();
+            }
+            count = 0;
+        }
+    }
+
+}
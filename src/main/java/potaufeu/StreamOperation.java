@@ -43,6 +43,11 @@ public final class StreamOperation<T> implements Iterable<T> {
         return this;
     }
 
+    public StreamOperation<T> parallel(boolean parallel) {
+        stream = (parallel) ? stream.parallel() : stream.sequential();
+        return this;
+    }
+
     public StreamOperation<T> sorted(Optional<Comparator<T>> sorter) {
         sorter.ifPresent(x -> stream = stream.sorted(x));
         return this;
@@ -63,7 +68,7 @@ public final class StreamOperation<T> implements Iterable<T> {
     public StreamOperation<T> tail(OptionalInt optCount) {
         optCount.ifPresent(count -> {
             Tail<T> q = new Tail<>(count);
-            stream.forEach(q::add);
+            stream.forEachOrdered(q::add);
             stream = q.tailStream();
         });
         return this;
@@ -78,37 +83,32 @@ public final class StreamOperation<T> implements Iterable<T> {
         return s.replaceFirst(".*\\.([^\\.]+)$", "$1");
     }
 
-    public static final class Sampler implements Consumer<Path> {
-        final Consumer<Path> action;
+    /**
+     * This class is thread-safe, so that it can be used in a parallel stream.
+     */
+    public static final class Sampler implements Consumer<PathEntry> {
+        final Consumer<PathEntry> action;
         final boolean isResultRecorded;
         final boolean isCounted;
-        private Result result;
-        private LongAdder count;
+        private final Result result;
+        private final LongAdder count;
 
         Sampler(boolean createsResult, boolean measuresCount) {
-            final Consumer<Path> action;
-            boolean doResultRecording = false;
-            boolean doCount = false;
-            if (createsResult) {
-                action = x -> getResult().addPath(x);
-                doResultRecording = true;
-                result = new Result();
-            }
-            else if (measuresCount) {
-                action = x -> getCount().increment();
-                doCount = true;
-                count = new LongAdder();
-            }
+            this.isResultRecorded = createsResult;
+            this.isCounted = !createsResult && measuresCount;
+            this.result = (isResultRecorded) ? new Result() : null;
+            this.count = (isCounted) ? new LongAdder() : null;
+            if (isResultRecorded)
+                action = x -> result.addPath(x.getPath()); // Result#addPath is synchronized
+            else if (isCounted)
+                action = x -> count.increment();
             else
                 action = x -> {
                 };
-            this.action = action;
-            this.isResultRecorded = doResultRecording;
-            this.isCounted = doCount;
         }
 
         @Override
-        public void accept(Path t) {
+        public void accept(PathEntry t) {
             action.accept(t);
         }
 
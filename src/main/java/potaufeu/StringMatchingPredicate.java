@@ -12,28 +12,93 @@ public interface StringMatchingPredicate {
 
     boolean matches(String s);
 
+    /**
+     * Returns whether a string which starts with the prefix can match.
+     * @param prefix the prefix
+     * @return false if no string with the prefix matches, true if it may match
+     */
+    default boolean mayMatchPrefix(String prefix) {
+        return true;
+    }
+
     static StringMatchingPredicate and(StringMatchingPredicate pred1, StringMatchingPredicate pred2) {
-        return s -> pred1.matches(s) && pred2.matches(s);
+        return new StringMatchingPredicate() {
+            @Override
+            public boolean matches(String s) {
+                return pred1.matches(s) && pred2.matches(s);
+            }
+
+            @Override
+            public boolean mayMatchPrefix(String prefix) {
+                return pred1.mayMatchPrefix(prefix) && pred2.mayMatchPrefix(prefix);
+            }
+        };
     }
 
     static StringMatchingPredicate or(StringMatchingPredicate pred1, StringMatchingPredicate pred2) {
-        return s -> pred1.matches(s) || pred2.matches(s);
+        return new StringMatchingPredicate() {
+            @Override
+            public boolean matches(String s) {
+                return pred1.matches(s) || pred2.matches(s);
+            }
+
+            @Override
+            public boolean mayMatchPrefix(String prefix) {
+                return pred1.mayMatchPrefix(prefix) || pred2.mayMatchPrefix(prefix);
+            }
+        };
     }
 
     static StringMatchingPredicate create(String pattern) {
-        if (pattern.startsWith("(?")) {
+        final String literal = LiteralMatcher.literalOf(pattern);
+        if (literal != null)
+            return LiteralMatcher.create(Collections.singletonList(literal), LiteralMatcher.ignoresCase(pattern), true);
+        else {
             // experimental
             Pattern p = Pattern.compile(pattern);
-            return x -> p.matcher(x).find();
+            // only the patterns anchored at the start can reject a prefix
+            Matcher m = Pattern.compile("\\(\\?([a-zA-Z]*)\\)\\^[^|]*").matcher(pattern);
+            final boolean anchored = m.matches() && !m.group(1).contains("m");
+            return new StringMatchingPredicate() {
+                @Override
+                public boolean matches(String s) {
+                    return p.matcher(s).find();
+                }
+
+                @Override
+                public boolean mayMatchPrefix(String prefix) {
+                    if (!anchored)
+                        return true;
+                    Matcher m = p.matcher(prefix);
+                    return m.lookingAt() || m.hitEnd();
+                }
+            };
         }
-        else
-            return x -> x.contains(pattern);
+    }
+
+    /**
+     * Returns the literal patterns, which match the strings containing them.
+     * @param patterns the patterns
+     * @return the non-empty patterns which are not regular expressions
+     */
+    static List<String> literals(List<String> patterns) {
+        List<String> a = new ArrayList<>();
+        for (String pattern : patterns)
+            if (!pattern.isEmpty() && !pattern.startsWith("(?"))
+                a.add(pattern);
+        return a;
     }
 
     static StringMatchingPredicate create(String... patterns) {
         return create(Arrays.asList(patterns));
     }
 
+    /**
+     * Creates the predicate which matches the strings matching all patterns.
+     * The literal patterns are searched at once.
+     * @param patterns the patterns
+     * @return the predicate
+     */
     static StringMatchingPredicate create(List<String> patterns) {
         switch (patterns.size()) {
             case 0:
@@ -41,8 +106,45 @@ public interface StringMatchingPredicate {
             case 1:
                 return create(patterns.get(0));
             default:
-                return patterns.stream().map(x -> create(x)).reduce(StringMatchingPredicate::and).get();
+                return combine(patterns, true);
+        }
+    }
+
+    /**
+     * Creates the predicate which matches the strings matching any of the patterns.
+     * The literal patterns are searched at once.
+     * @param patterns the patterns
+     * @return the predicate
+     */
+    static StringMatchingPredicate any(List<String> patterns) {
+        switch (patterns.size()) {
+            case 0:
+                return x -> false;
+            case 1:
+                return create(patterns.get(0));
+            default:
+                return combine(patterns, false);
+        }
+    }
+
+    static StringMatchingPredicate combine(List<String> patterns, boolean all) {
+        List<String> literals = new ArrayList<>();
+        List<String> literalsIgnoringCase = new ArrayList<>();
+        List<StringMatchingPredicate> a = new ArrayList<>();
+        for (String pattern : patterns) {
+            final String literal = LiteralMatcher.literalOf(pattern);
+            if (literal == null)
+                a.add(create(pattern));
+            else if (LiteralMatcher.ignoresCase(pattern))
+                literalsIgnoringCase.add(literal);
+            else
+                literals.add(literal);
         }
+        if (!literals.isEmpty())
+            a.add(0, LiteralMatcher.create(literals, false, all));
+        if (!literalsIgnoringCase.isEmpty())
+            a.add(0, LiteralMatcher.create(literalsIgnoringCase, true, all));
+        return a.stream().reduce(all ? StringMatchingPredicate::and : StringMatchingPredicate::or).get();
     }
 
 }
@@ -5,7 +5,7 @@ import java.nio.file.*;
 import java.util.function.*;
 
 @FunctionalInterface
-public interface TerminalOperation extends Consumer<Path> {
+public interface TerminalOperation extends Consumer<PathEntry> {
 
     public static TerminalOperation NOT_FOR_PATH = x -> {
     };
@@ -35,6 +35,8 @@ public interface TerminalOperation extends Consumer<Path> {
             return pf.linesCountList();
         if (opts.isPrintsAsTsv())
             return pf.listAsTsv();
+        if (opts.isPrintsFilesWithMatches())
+            return pf.path();
         if (!opts.getGrepPatterns().isEmpty())
             return NOT_FOR_PATH;
         if (opts.isCollectsExtension())
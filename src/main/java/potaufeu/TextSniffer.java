@@ -0,0 +1,139 @@
+package potaufeu;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Classifies files into text or binary by their first block, and detects their content type by its header.
+ *
+ * <p>A block which has a NUL byte, or more than one in ten control characters
+ * (other than tab, newlines, form feed, backspace and escape) is binary.
+ * Otherwise the block is text if it is valid UTF-8, since the lines of text files are read as UTF-8.
+ * The block is read into a direct buffer from a pool, so the file is not copied through the heap.
+ * All checks use the same block, so the file is read once for any number of filters.</p>
+ */
+final class TextSniffer {
+
+    static final int BLOCK_SIZE = 8192;
+
+    private static final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The kinds of contents.
+     */
+    enum Kind {
+        /** text in UTF-8 */
+        TEXT,
+        /** text which is not UTF-8, e.g. in another charset */
+        NON_UTF8,
+        /** binary */
+        BINARY,
+        /** not a regular file, or cannot be read */
+        UNKNOWN
+    }
+
+    /**
+     * The result of sniffing.
+     */
+    static final class Content {
+
+        static final Content UNKNOWN = new Content(Kind.UNKNOWN, null);
+
+        final Kind kind;
+        final ContentType type; // null: unknown
+
+        Content(Kind kind, ContentType type) {
+            this.kind = kind;
+            this.type = type;
+        }
+    }
+
+    private TextSniffer() {
+    }
+
+    /**
+     * Reads the first block of the file, and classifies it.
+     * @param path the path of the regular file
+     * @return the content
+     * @throws IOException
+     */
+    static Content sniff(Path path) throws IOException {
+        ByteBuffer buffer = buffers.poll();
+        if (buffer == null)
+            buffer = ByteBuffer.allocateDirect(BLOCK_SIZE);
+        try {
+            buffer.clear();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // fill
+                }
+            }
+            final boolean whole = buffer.hasRemaining();
+            buffer.flip();
+            return new Content(classify(buffer, whole), ContentType.detect(buffer));
+        } finally {
+            buffers.offer(buffer);
+        }
+    }
+
+    /**
+     * Classifies the bytes.
+     * @param buffer the bytes from the position to the limit
+     * @param whole true if the bytes are the whole file, false if they may be followed by more bytes
+     * @return the kind
+     */
+    static Kind classify(ByteBuffer buffer, boolean whole) {
+        final int start = buffer.position();
+        final int end = buffer.limit();
+        int controls = 0;
+        boolean utf8 = true;
+        int following = 0; // the continuation bytes to follow
+        int min = 0x80; // the range of the next continuation byte
+        int max = 0xBF;
+        for (int i = start; i < end; i++) {
+            final int b = buffer.get(i) & 0xFF;
+            if (b == 0)
+                return Kind.BINARY;
+            if ((b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f' && b != '\b' && b != 0x1B) || b == 0x7F)
+                controls++;
+            if (!utf8)
+                continue;
+            if (following > 0) {
+                if (b < min || b > max)
+                    utf8 = false;
+                following--;
+                min = 0x80;
+                max = 0xBF;
+            }
+            else if (b < 0x80)
+                continue;
+            else if (b >= 0xC2 && b <= 0xDF)
+                following = 1;
+            else if (b >= 0xE0 && b <= 0xEF) {
+                following = 2;
+                if (b == 0xE0)
+                    min = 0xA0; // overlong
+                else if (b == 0xED)
+                    max = 0x9F; // surrogates
+            }
+            else if (b >= 0xF0 && b <= 0xF4) {
+                following = 3;
+                if (b == 0xF0)
+                    min = 0x90; // overlong
+                else if (b == 0xF4)
+                    max = 0x8F; // over U+10FFFF
+            }
+            else
+                utf8 = false;
+        }
+        if (controls * 10 > end - start)
+            return Kind.BINARY;
+        // a sequence may be cut at the end of the block
+        return utf8 && (following == 0 || !whole) ? Kind.TEXT : Kind.NON_UTF8;
+    }
+
+}
@@ -0,0 +1,193 @@
+package potaufeu;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Options for walking directory trees.
+ */
+final class TraversalOptions {
+
+    final int maxDepth;
+    final boolean ignoreAccessDenied;
+    final PathMatcher exclusiveFilter;
+
+    boolean parallel;
+    boolean depthFirst;
+    ExecutorService executor; // null: directories are listed on the calling thread
+    int prefetchSize;
+    Predicate<Path> subtreeFilter = dir -> true;
+    VisitedDirectories visited = new VisitedDirectories(); // null: symbolic links are not followed
+    IgnoreFiles ignoreFiles; // null: ignore files are not read
+    boolean oneFileSystem;
+    List<String> pathSubstrings = Collections.emptyList();
+    List<String> nameSubstrings = Collections.emptyList();
+
+    TraversalOptions(int maxDepth, boolean ignoreAccessDenied, Optional<PathMatcher> optExclusiveFilter) {
+        this.maxDepth = maxDepth;
+        this.ignoreAccessDenied = ignoreAccessDenied;
+        this.exclusiveFilter = optExclusiveFilter.orElse(path -> false);
+    }
+
+    /**
+     * Makes the stream parallel, so that subtrees are walked on several threads.
+     * @param parallel true if parallel
+     * @return this object
+     */
+    TraversalOptions parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Walks trees in depth-first order with open directory cursors,
+     * instead of breadth-first order with queues.
+     * The depth-first walk is sequential: it is neither split nor prefetched.
+     * @param depthFirst true if depth-first
+     * @return this object
+     */
+    TraversalOptions depthFirst(boolean depthFirst) {
+        this.depthFirst = depthFirst;
+        return this;
+    }
+
+    /**
+     * Lists directories and reads the attributes of their entries on the executor,
+     * up to the specified number of directories ahead of the consumer.
+     * The order of entries does not change.
+     * This has no effect on the depth-first walk.
+     * @param executor the executor
+     * @param size the number of directories
+     * @return this object
+     */
+    TraversalOptions prefetch(ExecutorService executor, int size) {
+        this.executor = executor;
+        this.prefetchSize = size;
+        return this;
+    }
+
+    /**
+     * Skips listing the directories under which no entry can match.
+     * The directories themselves are still returned.
+     * @param subtreeFilter returns false if no entry below the directory can match
+     * @return this object
+     */
+    TraversalOptions subtreeFilter(Predicate<Path> subtreeFilter) {
+        this.subtreeFilter = subtreeFilter;
+        return this;
+    }
+
+    /**
+     * Follows symbolic links to directories (default), or does not.
+     * When following, each directory is listed only once even if it is reached through several links,
+     * so that link cycles end and shared subtrees are not scanned again.
+     * @param followsLinks true if following
+     * @return this object
+     */
+    TraversalOptions followLinks(boolean followsLinks) {
+        this.visited = followsLinks ? new VisitedDirectories() : null;
+        return this;
+    }
+
+    /**
+     * Skips the entries ignored by <code>.gitignore</code> and <code>.potfignore</code> files.
+     * The ignored directories are not listed.
+     * @param readsIgnoreFiles true if reading ignore files
+     * @return this object
+     */
+    TraversalOptions ignoreFiles(boolean readsIgnoreFiles) {
+        this.ignoreFiles = readsIgnoreFiles ? new IgnoreFiles() : null;
+        return this;
+    }
+
+    /**
+     * Does not descend into the directories on other file systems than the root's.
+     * @param oneFileSystem true if staying on the file system of the root
+     * @return this object
+     */
+    TraversalOptions oneFileSystem(boolean oneFileSystem) {
+        this.oneFileSystem = oneFileSystem;
+        return this;
+    }
+
+    /**
+     * Tells the substrings which the paths and the names of the matching entries contain.
+     * The walker returns all entries regardless of them, but the path index can select candidates by them.
+     * @param pathSubstrings the substrings of the paths
+     * @param nameSubstrings the substrings of the names
+     * @return this object
+     */
+    TraversalOptions substrings(List<String> pathSubstrings, List<String> nameSubstrings) {
+        this.pathSubstrings = pathSubstrings;
+        this.nameSubstrings = nameSubstrings;
+        return this;
+    }
+
+    /**
+     * Returns whether the entry in the directory is skipped by exclusion or ignore files.
+     * @param dir the directory
+     * @param entry the entry
+     * @return true if skipped
+     */
+    boolean skips(Path dir, PathEntry entry) {
+        return exclusiveFilter.matches(entry.getPath()) || (ignoreFiles != null && ignoreFiles.ignores(dir, entry));
+    }
+
+    /**
+     * Returns whether the walker lists the entry as a directory.
+     * The directories at the max depth are not listed, because their entries are not returned.
+     * @param root the root of the walk
+     * @param entry the entry
+     * @param depth the depth of the entry from the root
+     * @return true if the entry should be listed
+     */
+    boolean descends(PathEntry root, PathEntry entry, int depth) {
+        return mayDescend(root, entry, depth) && (visited == null || visited.add(entry));
+    }
+
+    /**
+     * Returns whether the walker lists the entry as a directory, without checking if it has been visited.
+     * @param root the root of the walk
+     * @param entry the entry
+     * @param depth the depth of the entry from the root
+     * @return true if the entry should be listed, unless visited
+     */
+    boolean mayDescend(PathEntry root, PathEntry entry, int depth) {
+        if (depth >= maxDepth(root.getPath()) || !entry.isDirectory())
+            return false;
+        if (visited == null && depth > 0 && entry.isSymbolicLink())
+            return false;
+        if (oneFileSystem && depth > 0 && !onSameFileSystem(root, entry))
+            return false;
+        return subtreeFilter.test(entry.getPath());
+    }
+
+    /**
+     * Returns the max depth of the entries under the root.
+     * The depth of <code>--depth</code> is the difference of the name counts of the entry and the root,
+     * and the empty path of the default root has one name like its entries,
+     * so the entries of the default root are at depth 0, one less than from the other roots.
+     * @param root the root
+     * @return the max depth from the root
+     */
+    int maxDepth(Path root) {
+        return (root.toString().isEmpty() && maxDepth < Integer.MAX_VALUE) ? maxDepth + 1 : maxDepth;
+    }
+
+    private static boolean onSameFileSystem(PathEntry root, PathEntry entry) {
+        // the device numbers are read once per entry
+        final long rootDevice = root.device();
+        final long device = entry.device();
+        if (rootDevice >= 0 && device >= 0)
+            return rootDevice == device;
+        try {
+            return Files.getFileStore(root.getPath()).equals(Files.getFileStore(entry.getPath()));
+        } catch (IOException e) {
+            return true; // the listing will report it
+        }
+    }
+
+}
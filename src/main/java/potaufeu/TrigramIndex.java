@@ -0,0 +1,304 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.regex.*;
+
+/**
+ * An index of the trigrams in the names of the entries in a path index.
+ * For each trigram (three successive chars), the posting list has the ordinals of the records
+ * whose name contains it.
+ *
+ * <p>A name which contains a literal pattern contains all of its trigrams,
+ * so the intersection of their posting lists has all candidates of the pattern.
+ * A path pattern is split by the separator, and each piece is in the name of the entry or one of its parents;
+ * so the candidates of the longest piece and their subtrees (which follow them in the path index) have all
+ * candidates of the pattern. The candidates are verified by the matchers as before.</p>
+ *
+ * <p>The file has the table of trigrams sorted with the sizes and the offsets of their lists,
+ * followed by the lists of delta-encoded ordinals, and is read through memory mapping.</p>
+ */
+final class TrigramIndex {
+
+    private static final Log log = Log.logger(TrigramIndex.class);
+
+    private static final byte[] MAGIC = "POTFTRI1".getBytes(UTF_8);
+    private static final int HEADER_SIZE = 8 + 8 + 4; // magic, created time, number of trigrams
+    private static final int TABLE_ENTRY_SIZE = 8 + 4 + 8; // trigram, number of ordinals, offset
+
+    private final ByteBuffer buffer;
+    private final int size;
+
+    private TrigramIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(16);
+    }
+
+    /**
+     * Opens the trigram index which was written with the path index.
+     * @param file the trigram index file
+     * @param createdTime the created time of the path index
+     * @return the index, or empty if not available
+     */
+    static Optional<TrigramIndex> open(Path file, long createdTime) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE)
+                return Optional.empty();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, fileSize);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || buffer.getLong() != createdTime) {
+                log.info(() -> "trigram index does not match: " + file);
+                return Optional.empty();
+            }
+            return Optional.of(new TrigramIndex(buffer));
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            log.warn(() -> "failed to read trigram index: " + file, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns the filter of the records by the substrings, if any of them can be looked up.
+     * @param file the trigram index file
+     * @param createdTime the created time of the path index
+     * @param root the root directory, as the parent of the paths to match
+     * @param pathSubstrings the substrings of the matching paths
+     * @param nameSubstrings the substrings of the matching names
+     * @return the filter, or empty
+     */
+    static Optional<Filter> filter(Path file, long createdTime, Path root, List<String> pathSubstrings,
+                                   List<String> nameSubstrings) {
+        if (pathSubstrings.isEmpty() && nameSubstrings.isEmpty())
+            return Optional.empty();
+        Optional<TrigramIndex> index = open(file, createdTime);
+        if (!index.isPresent())
+            return Optional.empty();
+        final String separator = root.getFileSystem().getSeparator();
+        String head = root.toString();
+        if (!head.isEmpty() && !head.endsWith(separator))
+            head += separator;
+        List<BitSet> pathCandidates = new ArrayList<>();
+        for (String s : pathSubstrings) {
+            if (overlaps(head, s))
+                continue; // may match the root part of paths
+            String piece = "";
+            for (String x : s.split(Pattern.quote(separator)))
+                if (x.length() > piece.length())
+                    piece = x;
+            BitSet bits = index.get().candidates(piece);
+            if (bits != null)
+                pathCandidates.add(bits);
+        }
+        BitSet nameCandidates = null;
+        for (String s : nameSubstrings) {
+            BitSet bits = index.get().candidates(s);
+            if (bits == null)
+                continue;
+            if (nameCandidates == null)
+                nameCandidates = bits;
+            else
+                nameCandidates.and(bits);
+        }
+        if (pathCandidates.isEmpty() && nameCandidates == null)
+            return Optional.empty();
+        return Optional.of(new Filter(pathCandidates.toArray(new BitSet[0]), nameCandidates));
+    }
+
+    private static boolean overlaps(String head, String s) {
+        if (head.contains(s))
+            return true;
+        for (int i = 1; i < s.length(); i++)
+            if (head.endsWith(s.substring(0, i)))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns the ordinals of the records whose name contains all trigrams of the string.
+     * @param s the string
+     * @return the ordinals, or null if the string has no trigrams
+     */
+    BitSet candidates(String s) {
+        final long[] trigrams = trigrams(s);
+        if (trigrams.length == 0)
+            return null;
+        // from the shortest list
+        int[] entries = new int[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            entries[i] = find(trigrams[i]);
+            if (entries[i] < 0)
+                return new BitSet();
+        }
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = entries[i];
+        Arrays.sort(order, Comparator.comparingInt(this::postingSize));
+        BitSet bits = postings(order[0]);
+        for (int i = 1; i < order.length && !bits.isEmpty(); i++)
+            bits.and(postings(order[i]));
+        return bits;
+    }
+
+    private int find(long trigram) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final long x = buffer.getLong(HEADER_SIZE + mid * TABLE_ENTRY_SIZE);
+            if (x < trigram)
+                low = mid + 1;
+            else if (x > trigram)
+                high = mid - 1;
+            else
+                return mid;
+        }
+        return -1;
+    }
+
+    private int postingSize(int entry) {
+        return buffer.getInt(HEADER_SIZE + entry * TABLE_ENTRY_SIZE + 8);
+    }
+
+    private BitSet postings(int entry) {
+        final int position = HEADER_SIZE + entry * TABLE_ENTRY_SIZE;
+        final int n = buffer.getInt(position + 8);
+        final long offset = buffer.getLong(position + 12);
+        ByteBuffer in = buffer.duplicate();
+        in.position((int) (HEADER_SIZE + (long) size * TABLE_ENTRY_SIZE + offset));
+        BitSet bits = new BitSet();
+        int ordinal = -1;
+        for (int i = 0; i < n; i++) {
+            ordinal += (int) PathIndex.readVarLong(in);
+            bits.set(ordinal);
+        }
+        return bits;
+    }
+
+    static long[] trigrams(String s) {
+        final int n = s.length() - 2;
+        if (n <= 0)
+            return new long[0];
+        long[] a = new long[n];
+        for (int i = 0; i < n; i++)
+            a[i] = key(s.charAt(i), s.charAt(i + 1), s.charAt(i + 2));
+        return Arrays.stream(a).sorted().distinct().toArray();
+    }
+
+    private static long key(char c0, char c1, char c2) {
+        return ((long) c0 << 32) | ((long) c1 << 16) | c2;
+    }
+
+    /**
+     * Collects the trigrams of the names in the order of records.
+     */
+    static final class Builder {
+        private final Map<Long, IntList> postings = new HashMap<>();
+        private int ordinal;
+
+        void add(String name) {
+            for (long trigram : trigrams(name))
+                postings.computeIfAbsent(trigram, x -> new IntList()).add(ordinal);
+            ordinal++;
+        }
+
+        void write(OutputStream os, long createdTime) throws IOException {
+            long[] trigrams = postings.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            DataOutputStream out = new DataOutputStream(os);
+            out.write(MAGIC);
+            out.writeLong(createdTime);
+            out.writeInt(trigrams.length);
+            long offset = 0L;
+            for (long trigram : trigrams) {
+                final IntList list = postings.get(trigram);
+                out.writeLong(trigram);
+                out.writeInt(list.size);
+                out.writeLong(offset);
+                int prev = -1;
+                for (int i = 0; i < list.size; i++) {
+                    offset += varLongSize(list.a[i] - prev);
+                    prev = list.a[i];
+                }
+            }
+            for (long trigram : trigrams) {
+                final IntList list = postings.get(trigram);
+                int prev = -1;
+                for (int i = 0; i < list.size; i++) {
+                    PathIndex.writeVarLong(out, list.a[i] - prev);
+                    prev = list.a[i];
+                }
+            }
+            out.flush();
+        }
+
+        private static int varLongSize(long v) {
+            int n = 1;
+            while ((v & ~0x7FL) != 0L) {
+                v >>>= 7;
+                n++;
+            }
+            return n;
+        }
+    }
+
+    private static final class IntList {
+        int[] a = new int[4];
+        int size;
+
+        void add(int x) {
+            if (size == a.length)
+                a = Arrays.copyOf(a, size * 2);
+            a[size++] = x;
+        }
+    }
+
+    /**
+     * Selects the records in the order of the path index.
+     * The new entries from refreshed directories have no ordinals, and are always selected.
+     */
+    static final class Filter {
+        private final BitSet[] pathCandidates;
+        private final BitSet nameCandidates; // null: no name substrings
+        private final int[] matchedDepths; // of the candidate parents of path substrings
+
+        Filter(BitSet[] pathCandidates, BitSet nameCandidates) {
+            this.pathCandidates = pathCandidates;
+            this.nameCandidates = nameCandidates;
+            this.matchedDepths = new int[pathCandidates.length];
+            Arrays.fill(matchedDepths, Integer.MAX_VALUE);
+        }
+
+        boolean accepts(PathIndex.Record r) {
+            return accepts(r.depth, r.ordinal);
+        }
+
+        /**
+         * Tests the record of the depth and the ordinal, in the order of the index.
+         * The result of the same record is not changed by testing it again.
+         * @param depth the depth
+         * @param ordinal the ordinal, or -1 for a new entry
+         * @return true if accepted
+         */
+        boolean accepts(int depth, int ordinal) {
+            boolean accepted = true;
+            for (int i = 0; i < pathCandidates.length; i++) {
+                if (matchedDepths[i] >= depth)
+                    matchedDepths[i] = Integer.MAX_VALUE; // out of the subtree
+                if (matchedDepths[i] == Integer.MAX_VALUE && (ordinal < 0 || pathCandidates[i].get(ordinal)))
+                    matchedDepths[i] = depth;
+                accepted &= matchedDepths[i] != Integer.MAX_VALUE;
+            }
+            if (nameCandidates != null && ordinal >= 0 && !nameCandidates.get(ordinal))
+                accepted = false;
+            return accepted || depth == 0;
+        }
+    }
+
+}
@@ -27,6 +27,7 @@ public final class VerboseMessages {
                 format("atime", opts.getAtimePatterns()),
                 format("file-only", opts.isFile()),
                 format("text-file", opts.isText()),
+                format("type", opts.getContentTypes()),
                 format("grep", opts.getGrepPatterns())))
             .collect(Collectors.joining(", "));
         // @formatter:on
@@ -38,13 +39,25 @@ public final class VerboseMessages {
             Stream.of(
                 format("dir", opts.getDirectories()),
                 format("max-depth", opts.getMaxDepth()),
+                format("depth-first", opts.isDepthFirst()),
+                format("follow", opts.isFollowsLinks()),
+                format("ignore-files", opts.isReadsIgnoreFiles()),
+                format("one-filesystem", opts.isOneFileSystem()),
                 format("quiet", opts.isQuiet()),
                 format("full path", opts.isPrintsFullpath()),
                 format("list", opts.isPrintsList()),
                 format("list-posix", opts.isPrintsPosixLikeList()),
                 format("list-detail", opts.isPrintsDetailList()),
                 format("list-linecount", opts.isPrintsLineCount()),
+                format("files-with-matches", opts.isPrintsFilesWithMatches()),
+                format("count", opts.isPrintsMatchCount()),
+                format("max-count", opts.getMaxCount()),
                 format("sortkeys", opts.getSortKeys()),
+                format("duplicates", opts.isFindsDuplicates()),
+                format("no-index", opts.isNoIndex()),
+                format("content-index", opts.isUsesContentIndex()),
+                format("threads", opts.getThreads()),
+                format("vthreads", opts.getVirtualThreads()),
                 format("slash", opts.isSlash()),
                 format("head", opts.getHeadCount()),
                 format("tail", opts.getTailCount()),
@@ -0,0 +1,76 @@
+package potaufeu;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A set of the directories visited by a walk which follows symbolic links.
+ * A directory is identified by its device and inode numbers,
+ * so that a directory reached through links is found as the same one.
+ * The numbers are held in an open addressing table of primitives, not in boxed keys.
+ * On file systems without the unix attribute view, the file keys or the real paths are held instead.
+ */
+final class VisitedDirectories {
+
+    private static final int INITIAL_CAPACITY = 1 << 10; // power of 2
+
+    private long[] table; // pairs of dev and ino
+    private boolean[] used;
+    private int size;
+    private final Set<Object> keys;
+
+    VisitedDirectories() {
+        this.table = new long[INITIAL_CAPACITY * 2];
+        this.used = new boolean[INITIAL_CAPACITY];
+        this.keys = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Adds the directory to this set.
+     * @param entry the directory
+     * @return true if the directory has not been visited yet, or cannot be identified
+     */
+    boolean add(PathEntry entry) {
+        final long dev = entry.device();
+        if (dev >= 0)
+            return add(dev, entry.inode());
+        Object key = entry.exists() ? entry.attributes().fileKey() : null;
+        try {
+            return keys.add((key == null) ? entry.getPath().toRealPath() : key);
+        } catch (IOException e) {
+            return true; // the listing will report it
+        }
+    }
+
+    synchronized boolean add(long dev, long ino) {
+        final int mask = used.length - 1;
+        int i = hash(dev, ino) & mask;
+        for (; used[i]; i = (i + 1) & mask)
+            if (table[i * 2] == dev && table[i * 2 + 1] == ino)
+                return false;
+        used[i] = true;
+        table[i * 2] = dev;
+        table[i * 2 + 1] = ino;
+        if (++size * 2 > used.length)
+            rehash();
+        return true;
+    }
+
+    private void rehash() {
+        final long[] oldTable = table;
+        final boolean[] oldUsed = used;
+        table = new long[oldTable.length * 2];
+        used = new boolean[oldUsed.length * 2];
+        size = 0;
+        for (int i = 0; i < oldUsed.length; i++)
+            if (oldUsed[i])
+                add(oldTable[i * 2], oldTable[i * 2 + 1]);
+    }
+
+    private static int hash(long dev, long ino) {
+        long h = (ino * 0x9E3779B97F4A7C15L) ^ dev;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,88 @@
+package potaufeu;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Executors for blocking I/O tasks (Java 21 or later).
+ * This class runs the tasks on virtual threads.
+ */
+final class IoExecutors {
+
+    private IoExecutors() {
+    }
+
+    static boolean isVirtual() {
+        return true;
+    }
+
+    /**
+     * Creates an executor which runs at most the specified number of tasks at once.
+     * @param concurrency the maximum number of running tasks
+     * @return the executor
+     */
+    static ExecutorService newExecutor(int concurrency) {
+        ThreadFactory factory = Thread.ofVirtual().name("potf-io-", 1).factory();
+        return new CappedExecutor(Executors.newThreadPerTaskExecutor(factory), concurrency);
+    }
+
+    /**
+     * An executor which limits the number of running tasks with a semaphore.
+     * The waiting tasks park their virtual threads, not platform threads.
+     */
+    private static final class CappedExecutor extends AbstractExecutorService {
+
+        private final ExecutorService executor;
+        private final Semaphore semaphore;
+
+        CappedExecutor(ExecutorService executor, int concurrency) {
+            this.executor = executor;
+            this.semaphore = new Semaphore(concurrency);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executor.execute(() -> {
+                try {
+                    semaphore.acquire();
+                } catch (InterruptedException e) {
+                    if (command instanceof Future)
+                        ((Future<?>) command).cancel(false);
+                    return;
+                }
+                try {
+                    command.run();
+                } finally {
+                    semaphore.release();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            executor.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executor.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executor.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executor.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executor.awaitTermination(timeout, unit);
+        }
+
+    }
+
+}
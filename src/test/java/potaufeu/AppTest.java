@@ -0,0 +1,151 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+import potaufeu.OptionSet.Parser;
+
+public final class AppTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testPruning() throws Exception {
+        Path root = tmpFolder.getRoot().toPath();
+        createFiles(root, "src/main/a/A.java", "src/main/b.txt", "src/test/T.java", "lib/x/L.java");
+        // the temporary folder has no metacharacters
+        String[] args = { "--no-index", "-d", root.toString(), "(?)^" + root + "/src/main/.+\\.java$" };
+        List<Path> walked = walk(args);
+        assertTrue(walked.contains(root.resolve("src/main/a/A.java")));
+        assertTrue(walked.contains(root.resolve("src/test")));
+        assertTrue(walked.contains(root.resolve("lib")));
+        assertFalse(walked.contains(root.resolve("src/test/T.java")));
+        assertFalse(walked.contains(root.resolve("lib/x")));
+        assertEquals(Arrays.asList(root.resolve("src/main/a/A.java").toString()), find(args));
+    }
+
+    @Test
+    public void testRootDirectories() throws Exception {
+        Path root = tmpFolder.getRoot().toPath();
+        createFiles(root, "a/sub/x", "a/y", "c/z");
+        Files.createSymbolicLink(root.resolve("b"), root.resolve("a/sub"));
+        final String a = root.resolve("a").toString();
+        final String sub = root.resolve("a/sub").toString();
+        final String b = root.resolve("b").toString();
+        assertEquals(Arrays.asList(Paths.get(a)), rootDirectories("-d", a, "-d", sub));
+        assertEquals(Arrays.asList(Paths.get(a)), rootDirectories("-d", sub, "-d", a));
+        assertEquals(Arrays.asList(Paths.get(a)), rootDirectories("-d", a, "-d", a));
+        // the link is not collapsed, so that its entries are printed with its prefix
+        assertEquals(Arrays.asList(Paths.get(a), Paths.get(b)), rootDirectories("-d", a, "-d", b));
+        assertEquals(Arrays.asList(Paths.get(a), Paths.get(sub)), rootDirectories("-d", a, "-d", sub, "-x", "y"));
+        assertEquals(Arrays.asList(Paths.get(a), Paths.get(sub)), rootDirectories("-d", a, "-d", sub, "(?)^/"));
+        assertEquals(Arrays.asList(Paths.get(a), Paths.get(sub)), rootDirectories("-d", a, "-d", sub, "--depth", "1"));
+    }
+
+    @Test
+    public void testMergedWalk() throws Exception {
+        Path root = tmpFolder.getRoot().toPath();
+        createFiles(root, "a/sub/x", "a/y", "c/z");
+        Files.createSymbolicLink(root.resolve("b"), root.resolve("a/sub"));
+        final String a = root.resolve("a").toString();
+        final String c = root.resolve("c").toString();
+        List<String> actual = find("--no-index", "-d", a, "-d", root.resolve("a/sub").toString(), "-d", c);
+        Collections.sort(actual);
+        assertEquals(Arrays.asList(a, a + "/sub", a + "/sub/x", a + "/y", c, c + "/z"), actual);
+        actual = find("--no-index", "-d", a, "-d", root.resolve("b").toString(), "--file");
+        assertTrue(actual.toString(), actual.contains(root.resolve("b/x").toString()));
+        assertTrue(actual.toString(), actual.contains(a + "/y"));
+    }
+
+    @Test
+    public void testIndexedAttributes() throws Exception {
+        Path root = tmpFolder.newFolder("root").toPath();
+        createFiles(root, "a/x", "a/y", "z");
+        final FileTime old = FileTime.fromMillis(TimePoint.millis("20000601"));
+        Files.setAttribute(root.resolve("a/x"), "lastAccessTime", old);
+        Files.setLastModifiedTime(root.resolve("z"), old);
+        Files.setAttribute(root.resolve("z"), "lastAccessTime", FileTime.fromMillis(System.currentTimeMillis()));
+        final String home = System.getProperty("potaufeu.user.home");
+        System.setProperty("potaufeu.user.home", tmpFolder.newFolder("home").getPath());
+        try {
+            tmpFolder.newFolder("home", ".potaufeu");
+            new App(new PrintWriter(new StringWriter())).updateIndex(new Parser().parse("-d", root.toString()));
+            assertTrue(PathIndex.open(root, new TraversalOptions(Integer.MAX_VALUE, false, Optional.empty())).isPresent());
+            for (String[] args : Arrays.asList(new String[] { "--atime", "2000" }, new String[] { "--ctime", "2000" },
+                new String[] { "--list-posix" }, new String[] { "--list-as-tsv" }, new String[] { "-S", "atime", "-l" })) {
+                List<String> indexed = new ArrayList<>(Arrays.asList("-d", root.toString()));
+                indexed.addAll(Arrays.asList(args));
+                List<String> walked = new ArrayList<>(indexed);
+                walked.add("--no-index");
+                assertEquals(indexed.toString(), find(walked.toArray(new String[0])), find(indexed.toArray(new String[0])));
+            }
+            assertEquals(Arrays.asList(root.resolve("a/x").toString()), find("-d", root.toString(), "--atime", "2000"));
+        } finally {
+            if (home == null)
+                System.clearProperty("potaufeu.user.home");
+            else
+                System.setProperty("potaufeu.user.home", home);
+        }
+    }
+
+    @Test
+    public void testDuplicatesWithIndex() throws Exception {
+        Path root = tmpFolder.newFolder("root").toPath();
+        Files.write(root.resolve("a"), "x".getBytes());
+        Files.write(root.resolve("c"), "yy".getBytes());
+        Files.write(root.resolve("d"), "yy".getBytes());
+        try {
+            Files.createLink(root.resolve("b"), root.resolve("a"));
+        } catch (UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+        }
+        final String home = System.getProperty("potaufeu.user.home");
+        System.setProperty("potaufeu.user.home", tmpFolder.newFolder("home").getPath());
+        try {
+            tmpFolder.newFolder("home", ".potaufeu");
+            new App(new PrintWriter(new StringWriter())).updateIndex(new Parser().parse("-d", root.toString()));
+            assertTrue(PathIndex.open(root, new TraversalOptions(Integer.MAX_VALUE, false, Optional.empty())).isPresent());
+            // the hard links are not duplicates
+            List<String> expected = Arrays.asList(root.resolve("c").toString(), root.resolve("d").toString());
+            assertEquals(expected, find("-d", root.toString(), "--duplicates", "--no-index"));
+            assertEquals(expected, find("-d", root.toString(), "--duplicates"));
+        } finally {
+            if (home == null)
+                System.clearProperty("potaufeu.user.home");
+            else
+                System.setProperty("potaufeu.user.home", home);
+        }
+    }
+
+    private static List<Path> rootDirectories(String... args) throws Exception {
+        return App.rootDirectories(new Parser().parse(args));
+    }
+
+    private static void createFiles(Path root, String... files) throws IOException {
+        for (String file : files) {
+            Path path = root.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.createFile(path);
+        }
+    }
+
+    private static List<Path> walk(String... args) throws Exception {
+        try (Stream<PathEntry> stream = new App().createStream(new Parser().parse(args), new LongAdder())) {
+            return stream.map(PathEntry::getPath).collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> find(String... args) throws Exception {
+        StringWriter sw = new StringWriter();
+        new App(new PrintWriter(sw, true)).find(new Parser().parse(args));
+        return new ArrayList<>(Arrays.asList(sw.toString().split(System.lineSeparator())));
+    }
+
+}
@@ -0,0 +1,81 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class ByteGrepTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testCreate() {
+        assertTrue(ByteGrep.create(asList("abc", "(?i)def"), UTF_8).isPresent());
+        assertFalse(ByteGrep.create(asList("abc", "(?)a.c"), UTF_8).isPresent());
+        assertFalse(ByteGrep.create(asList("abc"), UTF_16LE).isPresent());
+        assertFalse(ByteGrep.create(asList("あ"), US_ASCII).isPresent());
+        assertFalse(ByteGrep.create(Collections.emptyList(), UTF_8).isPresent());
+    }
+
+    @Test
+    public void testGrep() throws IOException {
+        final String text = "The Fall\r\nof the House\rof Usher\n\nhouse fall\nあ house of usher";
+        assertEquals("[2:of the House, 6:あ house of usher]", grep(text, UTF_8, "of", "(?i)HOUSE"));
+        assertEquals("[2:of the House, 5:house fall, 6:あ house of usher]", grep(text, UTF_8, "(?i)house", "(?i)e"));
+        assertEquals("[1:The Fall, 5:house fall]", grep(text, UTF_8, "(?i)FALL"));
+        assertEquals("[3:of Usher, 6:あ house of usher]", grep(text, UTF_8, "(?i)usher"));
+        assertEquals("[3:of Usher]", grep(text, UTF_8, "Usher"));
+        assertEquals("[6:あ house of usher]", grep(text, UTF_8, "あ"));
+        assertEquals("[]", grep(text, UTF_8, "Fall of"));
+        assertEquals("[1:café]", grep("café\n", ISO_8859_1, "caf"));
+    }
+
+    @Test
+    public void testGrepLargeFile() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; sb.length() < ByteGrep.CHUNK_SIZE * 3; i++)
+            sb.append(i % 1000 == 0 ? "あ" : "").append("line ").append(i).append(i % 2 == 0 ? "\n" : "\r\n");
+        // the lines across the chunks
+        final String text = sb.toString();
+        Path file = tmpFolder.newFile("a.txt").toPath();
+        Files.write(file, text.getBytes(UTF_8));
+        List<FileLine> expected = LineMatcherFactory.grep(StringMatchingPredicate.create("(?i)LINE"), file, UTF_8);
+        List<FileLine> actual = ByteGrep.create(asList("(?i)LINE"), UTF_8).get().grep(file);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).number, actual.get(i).number);
+            assertEquals(expected.get(i).text, actual.get(i).text);
+        }
+    }
+
+    @Test
+    public void testGrepMalformed() throws IOException {
+        Path file = tmpFolder.newFile("a.txt").toPath();
+        Files.write(file, "café\n".getBytes(ISO_8859_1));
+        assertNull(ByteGrep.create(asList("caf"), UTF_8).get().grep(file));
+        assertNull(ByteGrep.create(asList("caf"), US_ASCII).get().grep(file));
+        // cut at the end
+        Files.write(file, new byte[] { 'a', (byte) 0xE3, (byte) 0x81 });
+        assertNull(ByteGrep.create(asList("a"), UTF_8).get().grep(file));
+        // ASCII in a multibyte char
+        Files.write(file, new byte[] { 'k', 'e', 'y', (byte) 0xE4, 'x', (byte) 0x88, (byte) 0x9F, '\n' });
+        assertNull(ByteGrep.create(asList("key"), UTF_8).get().grep(file));
+        assertNull(ByteGrep.create(asList("x"), UTF_8).get().grep(file));
+    }
+
+    private String grep(String text, Charset charset, String... patterns) throws IOException {
+        Path file = tmpFolder.newFile().toPath();
+        Files.write(file, text.getBytes(charset));
+        List<FileLine> fileLines = ByteGrep.create(asList(patterns), charset).get().grep(file);
+        return fileLines.stream().map(x -> x.number + ":" + x.text).collect(Collectors.toList()).toString();
+    }
+
+}
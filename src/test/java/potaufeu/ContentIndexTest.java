@@ -0,0 +1,94 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class ContentIndexTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testRequiredLiterals() {
+        assertEquals("[abc]", ContentIndex.requiredLiterals("abc").toString());
+        assertEquals("[abc, def]", ContentIndex.requiredLiterals("abcあdef").toString());
+        assertEquals("[abc, def]", ContentIndex.requiredLiterals("(?)abc.*def").toString());
+        assertEquals("[ab, d]", ContentIndex.requiredLiterals("(?)abc?d").toString());
+        assertEquals("[ab, cd]", ContentIndex.requiredLiterals("(?)ab+cd").toString());
+        assertEquals("[a.b, c]", ContentIndex.requiredLiterals("(?s)a\\.b\\dc").toString());
+        assertEquals("[x, yz]", ContentIndex.requiredLiterals("(?)x(abc)?yz[def]{2,3}").toString());
+        assertEquals("[bc]", ContentIndex.requiredLiterals("(?)\\x41bc").toString());
+        assertEquals("[abc]", ContentIndex.requiredLiterals("(?)(x)\\1abc").toString());
+        assertEquals("[]", ContentIndex.requiredLiterals("(?)abc|def").toString());
+        assertEquals("[]", ContentIndex.requiredLiterals("(?i)abc").toString());
+        assertEquals("[]", ContentIndex.requiredLiterals("(?)ab(?i)cd").toString());
+    }
+
+    @Test
+    public void testCandidates() throws IOException {
+        final String home = System.getProperty("potaufeu.user.home");
+        System.setProperty("potaufeu.user.home", tmpFolder.newFolder("home").getPath());
+        try {
+            tmpFolder.newFolder("home", ".potaufeu");
+            StringBuilder sb = new StringBuilder("hello\n");
+            while (sb.length() < ByteGrep.CHUNK_SIZE * 2)
+                sb.append("filler\n");
+            Path a = write("a.txt", sb + "tail\n");
+            Path b = write("b.txt", "goodbye\n");
+            Path c = write("c.txt", "hello again\n");
+            ContentIndex index = ContentIndex.load();
+            assertEquals(1, grep(index, "hello", LineMatcherFactory.Retention.LINES, a, b));
+            // stops at the first match, so the rest is read to index
+            assertEquals(1, grep(index, "hello", LineMatcherFactory.Retention.NONE, c));
+            index.saveIfChanged();
+            index = ContentIndex.load();
+            assertEquals(3, index.size());
+            assertEquals(Arrays.asList(true, false, true), test(index.candidates(asList("hello")), a, b, c));
+            assertEquals(Arrays.asList(true, false, false), test(index.candidates(asList("tail")), a, b, c));
+            assertEquals(Arrays.asList(false, false, true), test(index.candidates(asList("again")), a, b, c));
+            assertEquals(Arrays.asList(false, true, false), test(index.candidates(asList("bye")), a, b, c));
+            // removed files are dropped
+            Files.delete(b);
+            Path d = write("d.txt", "hello\n");
+            assertEquals(1, grep(index, "hello", LineMatcherFactory.Retention.LINES, d));
+            index.saveIfChanged();
+            assertEquals(3, ContentIndex.load().size());
+        } finally {
+            if (home == null)
+                System.clearProperty("potaufeu.user.home");
+            else
+                System.setProperty("potaufeu.user.home", home);
+        }
+    }
+
+    private static int grep(ContentIndex index, String pattern, LineMatcherFactory.Retention retention, Path... files) {
+        Predicate<PathEntry> filter =
+            LineMatcherFactory.createGrepFilter(asList(pattern), new HashMap<>(), index, retention, Integer.MAX_VALUE);
+        int count = 0;
+        for (Path file : files)
+            if (filter.test(new PathEntry(file)))
+                count++;
+        return count;
+    }
+
+    private static List<Boolean> test(Predicate<PathEntry> filter, Path... files) {
+        List<Boolean> a = new ArrayList<>();
+        for (Path file : files)
+            a.add(filter.test(new PathEntry(file)));
+        return a;
+    }
+
+    private Path write(String name, String text) throws IOException {
+        Path path = tmpFolder.newFile(name).toPath();
+        Files.write(path, text.getBytes(UTF_8));
+        return path;
+    }
+
+}
@@ -0,0 +1,70 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class DepthFirstPathIteratorTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testPreOrder() throws IOException {
+        Path root = tmpFolder.getRoot().toPath();
+        for (String dir : Arrays.asList("a/b/c", "a/d", "e/f/g", "h"))
+            Files.createDirectories(root.resolve(dir));
+        for (String file : Arrays.asList("a/b/c/1", "a/b/2", "a/3", "e/f/g/4", "e/5", "6"))
+            Files.createFile(root.resolve(file));
+        List<Path> actual = walk(root, Integer.MAX_VALUE);
+        assertEquals(walk(root, Integer.MAX_VALUE, false), actual.stream().sorted().collect(Collectors.toList()));
+        // each directory is followed by all of its descendants
+        assertEquals(root, actual.get(0));
+        for (int i = 0; i < actual.size(); i++) {
+            final Path dir = actual.get(i);
+            int j = i + 1;
+            while (j < actual.size() && actual.get(j).startsWith(dir))
+                j++;
+            for (int k = j; k < actual.size(); k++)
+                assertFalse(actual.get(k) + " after " + dir, actual.get(k).startsWith(dir));
+        }
+    }
+
+    @Test
+    public void testMaxDepth() throws IOException {
+        Path root = tmpFolder.getRoot().toPath();
+        Files.createFile(Files.createDirectories(root.resolve("a/b/c")).resolve("1"));
+        Files.createFile(root.resolve("2"));
+        assertEquals(Arrays.asList(root), walk(root, 0));
+        assertEquals(Arrays.asList(root, root.resolve("2"), root.resolve("a")),
+            walk(root, 1).stream().sorted().collect(Collectors.toList()));
+        assertEquals(Arrays.asList(root, root.resolve("a"), root.resolve("a/b")),
+            walk(root, 2).stream().filter(x -> !x.endsWith("2")).collect(Collectors.toList()));
+        assertEquals(6, walk(root, 4).size());
+    }
+
+    @Test
+    public void testDefaultRoot() throws IOException {
+        // the same entries as the breadth-first walk, with the same depth
+        final Path root = Paths.get("");
+        for (int maxDepth = 0; maxDepth <= 1; maxDepth++)
+            assertEquals(walk(root, maxDepth, false), walk(root, maxDepth).stream().sorted().collect(Collectors.toList()));
+    }
+
+    private static List<Path> walk(Path root, int maxDepth) {
+        return walk(root, maxDepth, true);
+    }
+
+    private static List<Path> walk(Path root, int maxDepth, boolean depthFirst) {
+        TraversalOptions options = new TraversalOptions(maxDepth, false, Optional.empty()).depthFirst(depthFirst);
+        try (Stream<PathEntry> stream = PathIterator.entries(root, options)) {
+            Stream<Path> paths = stream.map(PathEntry::getPath);
+            return (depthFirst ? paths : paths.sorted()).collect(Collectors.toList());
+        }
+    }
+
+}
@@ -0,0 +1,66 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class DuplicateFinderTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testFind() throws Exception {
+        byte[] large = new byte[DuplicateFinder.BLOCK_SIZE * 3];
+        Arrays.fill(large, (byte) 'x');
+        byte[] middle = large.clone();
+        middle[DuplicateFinder.BLOCK_SIZE + 1] = 'y'; // the same first and last blocks
+        List<Path> paths = new ArrayList<>();
+        paths.add(write("a1", "aaa".getBytes()));
+        paths.add(write("b1", "bbb".getBytes()));
+        paths.add(write("a2", "aaa".getBytes()));
+        paths.add(write("e1", new byte[0]));
+        paths.add(write("e2", new byte[0]));
+        paths.add(write("x1", large));
+        paths.add(write("y1", middle));
+        paths.add(write("x2", large));
+        paths.add(write("b2", "bbb".getBytes()));
+        Path link = tmpFolder.getRoot().toPath().resolve("a3");
+        try {
+            Files.createLink(link, paths.get(0));
+            paths.add(link);
+        } catch (UnsupportedOperationException e) {
+            // hard links are not supported
+        }
+        final String expected = "[[a1, a2], [b1, b2], [x1, x2]]";
+        assertEquals(expected, find(paths.stream(), null));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, pool.submit(() -> find(paths.parallelStream(), null)).get());
+        } finally {
+            pool.shutdown();
+        }
+        ExecutorService io = Executors.newFixedThreadPool(2);
+        try {
+            assertEquals(expected, find(paths.stream(), io));
+        } finally {
+            io.shutdown();
+        }
+    }
+
+    private static String find(Stream<Path> paths, ExecutorService io) {
+        List<List<PathEntry>> groups = DuplicateFinder.find(paths.map(PathEntry::new), io);
+        return groups.stream().map(a -> a.stream().map(PathEntry::name).collect(Collectors.toList()))
+                .collect(Collectors.toList()).toString();
+    }
+
+    private Path write(String name, byte[] bytes) throws IOException {
+        return Files.write(tmpFolder.newFile(name).toPath(), bytes);
+    }
+
+}
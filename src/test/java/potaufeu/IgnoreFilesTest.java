@@ -0,0 +1,60 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class IgnoreFilesTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testToRegex() {
+        assertEquals("[^/]*\\.class", IgnoreFiles.Rule.toRegex("*.class"));
+        assertEquals("(?:.*/)?build", IgnoreFiles.Rule.toRegex("**/build"));
+        assertEquals("a/.*", IgnoreFiles.Rule.toRegex("a/**"));
+        assertEquals("[^ab]x[^/]", IgnoreFiles.Rule.toRegex("[!ab]x?"));
+    }
+
+    @Test
+    public void testTraversal() throws IOException {
+        Path root = tmpFolder.getRoot().toPath();
+        write(root.resolve(".gitignore"), "# comment", "target/", "*.log", "/top.txt", "!keep.log");
+        write(root.resolve("a/.potfignore"), "b/c.txt");
+        touch(root.resolve("a/b/c.txt"));
+        touch(root.resolve("a/b/d.txt"));
+        touch(root.resolve("a/x.log"));
+        touch(root.resolve("a/keep.log"));
+        touch(root.resolve("a/top.txt"));
+        touch(root.resolve("top.txt"));
+        touch(root.resolve("target/classes/A.class"));
+        touch(root.resolve("a/target"));
+        touch(root.resolve(".git/config"));
+        final String expected = "[, .gitignore, a, a/.potfignore, a/b, a/b/d.txt, a/keep.log, a/target, a/top.txt]";
+        for (boolean depthFirst : new boolean[] { false, true }) {
+            TraversalOptions options =
+                new TraversalOptions(Integer.MAX_VALUE, false, Optional.empty()).ignoreFiles(true).depthFirst(depthFirst);
+            try (Stream<PathEntry> stream = PathIterator.entries(root, options)) {
+                List<String> a = stream.map(x -> root.relativize(x.getPath()).toString().replace('\\', '/')).sorted()
+                        .collect(Collectors.toList());
+                assertEquals(expected, a.toString());
+            }
+        }
+    }
+
+    private static void write(Path path, String... lines) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines));
+    }
+
+    private static void touch(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.createFile(path);
+    }
+
+}
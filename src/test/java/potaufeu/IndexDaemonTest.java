@@ -0,0 +1,78 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class IndexDaemonTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private String home;
+
+    @Before
+    public void setUp() throws IOException {
+        home = System.getProperty("potaufeu.user.home");
+        System.setProperty("potaufeu.user.home", tmpFolder.newFolder("home").getPath());
+        tmpFolder.newFolder("home", ".potaufeu");
+    }
+
+    @After
+    public void tearDown() {
+        if (home == null)
+            System.clearProperty("potaufeu.user.home");
+        else
+            System.setProperty("potaufeu.user.home", home);
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        Path root = tmpFolder.newFolder("root").toPath().toRealPath();
+        touch(root.resolve("a/x"));
+        touch(root.resolve("b/y"));
+        IndexDaemon daemon = new IndexDaemon(root, () -> new TraversalOptions(Integer.MAX_VALUE, false, Optional.empty()));
+        daemon.start();
+        assertEquals("[, a, a/x, b, b/y]", read(root));
+        Thread th = new Thread(daemon);
+        th.start();
+        try {
+            touch(root.resolve("a/z"));
+            Files.delete(root.resolve("a/x"));
+            Files.move(root.resolve("b"), root.resolve("c"));
+            touch(root.resolve("d/e/f"));
+            // written after the changes settle, without waiting for the interval
+            final String expected = "[, a, a/z, c, c/y, d, d/e, d/e/f]";
+            final long startTime = System.currentTimeMillis();
+            String actual = read(root);
+            while (!actual.equals(expected) && System.currentTimeMillis() - startTime < 20_000L) {
+                Thread.sleep(100L);
+                actual = read(root);
+            }
+            assertEquals(expected, actual);
+            assertTrue(System.currentTimeMillis() - startTime < IndexDaemon.CHECKPOINT_INTERVAL);
+            assertEquals(8, daemon.size());
+        } finally {
+            th.interrupt();
+            th.join();
+        }
+    }
+
+    private static String read(Path root) throws IOException {
+        List<String> a = new ArrayList<>();
+        try (PathIndex.Reader reader = new PathIndex.Reader(PathIndex.indexFile(root))) {
+            for (PathIndex.Record r; (r = reader.next()) != null;)
+                a.add(r.relativePath.replace('\\', '/'));
+        }
+        return a.toString();
+    }
+
+    private static void touch(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.createFile(path);
+    }
+
+}
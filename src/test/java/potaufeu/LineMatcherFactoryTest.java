@@ -0,0 +1,81 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class LineMatcherFactoryTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testCreateGrepFilter() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < LineMatcherFactory.SAMPLE_SIZE)
+            sb.append("cafe\n");
+        final String head = sb.toString();
+        // the bytes of Latin-1 follow the first block of UTF-8
+        Path utf8 = write("utf8.txt", "café\r\n", UTF_8);
+        Path latin1 = write("latin1.txt", "x\ncafé\n", ISO_8859_1);
+        Path mixed = write("mixed.txt", head + "café\n", ISO_8859_1);
+        for (String pattern : asList("caf", "(?)caf.")) {
+            Map<Path, GrepResult> grepped = new HashMap<>();
+            Predicate<PathEntry> filter = LineMatcherFactory.createGrepFilter(asList(pattern, "é"), grepped);
+            assertTrue(filter.test(new PathEntry(utf8)));
+            assertTrue(filter.test(new PathEntry(latin1)));
+            assertTrue(filter.test(new PathEntry(mixed)));
+            assertEquals("1:café", toString(grepped.get(utf8).lines));
+            assertEquals("2:café", toString(grepped.get(latin1).lines));
+            assertEquals((head.length() / 5 + 1) + ":café", toString(grepped.get(mixed).lines));
+        }
+    }
+
+    @Test
+    public void testCreateGrepFilterWithRetention() throws IOException {
+        Path file = write("a.txt", "a1\nb\na2\na3\n", UTF_8);
+        for (String pattern : asList("a", "(?)a[0-9]")) {
+            assertEquals("[1:a1, 3:a2, 4:a3]", grep(file, pattern, LineMatcherFactory.Retention.LINES, 9));
+            assertEquals("[1:a1, 3:a2]", grep(file, pattern, LineMatcherFactory.Retention.LINES, 2));
+            assertEquals("3", grep(file, pattern, LineMatcherFactory.Retention.COUNT, 9));
+            assertEquals("2", grep(file, pattern, LineMatcherFactory.Retention.COUNT, 2));
+            assertEquals("1", grep(file, pattern, LineMatcherFactory.Retention.NONE, 9));
+            assertEquals("-", grep(file, pattern, LineMatcherFactory.Retention.LINES, 0));
+        }
+    }
+
+    private static String grep(Path file, String pattern, LineMatcherFactory.Retention retention, int maxCount) {
+        Map<Path, GrepResult> grepped = new HashMap<>();
+        Predicate<PathEntry> filter =
+            LineMatcherFactory.createGrepFilter(asList(pattern), grepped, null, retention, maxCount);
+        if (!filter.test(new PathEntry(file)))
+            return "-";
+        GrepResult result = grepped.get(file);
+        if (retention != LineMatcherFactory.Retention.LINES) {
+            assertTrue(result.lines.isEmpty());
+            return String.valueOf(result.count);
+        }
+        assertEquals(result.count, result.lines.size());
+        return result.lines.stream().map(x -> x.number + ":" + x.text).collect(Collectors.toList()).toString();
+    }
+
+    private Path write(String name, String text, Charset charset) throws IOException {
+        Path path = tmpFolder.newFile(name).toPath();
+        Files.write(path, text.getBytes(charset));
+        return path;
+    }
+
+    private static String toString(List<FileLine> fileLines) {
+        assertEquals(1, fileLines.size());
+        return fileLines.get(0).number + ":" + fileLines.get(0).text;
+    }
+
+}
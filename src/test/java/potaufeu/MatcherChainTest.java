@@ -0,0 +1,28 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.*;
+
+public final class MatcherChainTest {
+
+    @Test
+    public void testOrder() {
+        EntryMatcher content = EntryMatcher.of(path -> true, EntryMatcher.Cost.CONTENT);
+        EntryMatcher all = EntryMatcher.of(path -> true, EntryMatcher.Cost.PATH);
+        EntryMatcher java = EntryMatcher.of(path -> path.toString().endsWith(".java"), EntryMatcher.Cost.PATH);
+        EntryMatcher size = entry -> true;
+        MatcherChain chain = new MatcherChain(content, all, java, size);
+        // by the cost classes
+        assertEquals(Arrays.asList(all, java, size, content), chain.matchers());
+        int n = 0;
+        for (int i = 0; i < MatcherChain.REORDER_INTERVAL; i++)
+            if (chain.test(new PathEntry(Paths.get(i % 10 == 0 ? "A.java" : "a.txt"))))
+                n++;
+        assertEquals(MatcherChain.REORDER_INTERVAL / 10 + 1, n);
+        // by the pass rates
+        assertEquals(Arrays.asList(java, all, size, content), chain.matchers());
+    }
+
+}
@@ -54,4 +54,50 @@ public class OptionSetTest {
         }
     }
 
+    @Test
+    public void testParserFollowsLinks() throws Exception {
+        Parser parser = new Parser();
+        assertTrue(parser.parse().isFollowsLinks());
+        assertTrue(parser.parse("--follow").isFollowsLinks());
+        assertFalse(parser.parse("--no-follow").isFollowsLinks());
+        try {
+            parser.parse("--follow", "--no-follow");
+            fail("expects an error: exclusive options");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message("e.exclusiveOptions", "follow", "no-follow"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParserDepthFirst() throws Exception {
+        Parser parser = new Parser();
+        assertTrue(parser.parse("--depth-first").isDepthFirst());
+        assertTrue(parser.parse("--depth-first", "--vthreads", "4").isDepthFirst());
+        try {
+            parser.parse("--depth-first", "--threads", "4");
+            fail("expects an error: exclusive options");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message("e.exclusiveOptions", "depth-first", "threads"), e.getMessage());
+        }
+    }
+
+    @Test
+    public void testParserCount() throws Exception {
+        Parser parser = new Parser();
+        assertTrue(parser.parse("--count", "-g", "x").isPrintsMatchCount());
+        assertEquals(3, parser.parse("--max-count", "3", "-g", "x").getMaxCount().getAsInt());
+        try {
+            parser.parse("--count", "--files-with-matches", "-g", "x");
+            fail("expects an error: exclusive options");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message("e.exclusiveOptions", "count", "files-with-matches"), e.getMessage());
+        }
+        try {
+            parser.parse("--max-count=-1", "-g", "x");
+            fail("expects an error: negative number");
+        } catch (IllegalArgumentException e) {
+            assertEquals(message("e.argOptionMustPositiveNumber", "max-count", "-1"), e.getMessage());
+        }
+    }
+
 }
@@ -0,0 +1,89 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class OrderedFilterTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testFilter() throws IOException {
+        Path root = tmpFolder.getRoot().toPath();
+        for (int i = 0; i < 40; i++)
+            Files.write(Files.createDirectories(root.resolve("d" + i % 4)).resolve("f" + i),
+                Arrays.asList((i % 3 == 0) ? "hit " + i : "miss " + i), UTF_8);
+        List<Path> paths = PathIterator.entries(root, new TraversalOptions(Integer.MAX_VALUE, false, Optional.empty()))
+                .filter(PathEntry::isRegularFile).map(PathEntry::getPath).collect(Collectors.toList());
+        Map<Path, GrepResult> grepped = new ConcurrentHashMap<>();
+        Predicate<PathEntry> grepFilter = LineMatcherFactory.createGrepFilter(Arrays.asList("hit"), grepped);
+        final List<Path> expected =
+            paths.stream().map(PathEntry::new).filter(grepFilter).map(PathEntry::getPath).collect(Collectors.toList());
+        assertEquals(14, expected.size());
+        // every fifth file is slow, so that the later ones finish first
+        final int window = 3;
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Predicate<PathEntry> predicate = x -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (paths.indexOf(x.getPath()) % 5 == 0)
+                    Thread.sleep(20L);
+                return grepFilter.test(x);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(window * 2);
+        try {
+            AtomicInteger pulled = new AtomicInteger();
+            List<Path> actual = new ArrayList<>();
+            OrderedFilter.filter(paths.stream().peek(x -> pulled.incrementAndGet()).map(PathEntry::new), predicate,
+                executor, window).forEach(x -> {
+                    // the elements after the window are not pulled yet
+                    assertTrue(pulled.get() <= paths.indexOf(x.getPath()) + 1 + window);
+                    actual.add(x.getPath());
+                });
+            assertEquals(expected, actual);
+            assertEquals(paths.size(), pulled.get());
+            assertTrue(maxRunning.get() <= window);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testFilterException() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Integer> actual = new ArrayList<>();
+            try {
+                OrderedFilter.filter(IntStream.range(0, 10).boxed(), x -> {
+                    if (x == 5)
+                        throw new UncheckedIOException(new IOException("x"));
+                    return x % 2 == 0;
+                }, executor, 4).forEach(actual::add);
+                fail();
+            } catch (UncheckedIOException e) {
+                assertEquals("x", e.getCause().getMessage());
+            }
+            // the elements before the failure have been passed in order
+            assertEquals(Arrays.asList(0, 2, 4), actual);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.*;
+import java.util.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class PathIndexTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testRefresh() throws IOException {
+        Path root = tmpFolder.newFolder("root").toPath().toRealPath();
+        Path file = tmpFolder.newFile("index").toPath();
+        touch(root.resolve("a/b/c.txt"));
+        touch(root.resolve("a/d.txt"));
+        touch(root.resolve("e/f.txt"));
+        try (OutputStream os = Files.newOutputStream(file)) {
+            assertEquals(7L, PathIndex.write(os, root, null, options(Integer.MAX_VALUE)));
+        }
+        assertEquals("[, a, a/b, a/b/c.txt, a/d.txt, e, e/f.txt]", read(root, file, Integer.MAX_VALUE));
+        // changes a and e, and not a/b
+        touch(root.resolve("a/a.txt"));
+        Files.delete(root.resolve("e/f.txt"));
+        touch(root.resolve("e/g/h.txt"));
+        Files.setLastModifiedTime(root.resolve("a"), FileTime.fromMillis(0L));
+        Files.setLastModifiedTime(root.resolve("e"), FileTime.fromMillis(0L));
+        final String expected = "[, a, a/a.txt, a/b, a/b/c.txt, a/d.txt, e, e/g, e/g/h.txt]";
+        assertEquals(expected, read(root, file, Integer.MAX_VALUE));
+        assertEquals("[, a, a/a.txt, a/b, a/d.txt, e, e/g]", read(root, file, 2));
+        Path file2 = tmpFolder.newFile("index2").toPath();
+        try (OutputStream os = Files.newOutputStream(file2); PathIndex.Reader reader = new PathIndex.Reader(file)) {
+            assertEquals(9L, PathIndex.write(os, root, reader, options(Integer.MAX_VALUE)));
+        }
+        assertEquals(expected, read(root, file2, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testSkipUnaccepted() throws IOException {
+        Path root = tmpFolder.newFolder("root").toPath().toRealPath();
+        Path file = tmpFolder.newFile("index").toPath();
+        touch(root.resolve("a/b/c.txt"));
+        touch(root.resolve("a/d.txt"));
+        touch(root.resolve("e/f.txt"));
+        try (OutputStream os = Files.newOutputStream(file)) {
+            PathIndex.write(os, root, null, options(Integer.MAX_VALUE));
+        }
+        // accepts only a/d.txt by name, and the directories are still read
+        BitSet names = new BitSet();
+        names.set(4);
+        try (PathIndex.Reader reader = new PathIndex.Reader(file)) {
+            reader.skipUnaccepted(new TrigramIndex.Filter(new BitSet[0], names));
+            reader.setSkippableDepth(0);
+            List<Integer> a = new ArrayList<>();
+            for (PathIndex.Record r; (r = reader.next()) != null;)
+                a.add(r.ordinal);
+            assertEquals("[0, 1, 2, 4, 5]", a.toString());
+        }
+        // the files under the changed directory are compared by name
+        touch(root.resolve("e/g.txt"));
+        Files.setLastModifiedTime(root.resolve("e"), FileTime.fromMillis(0L));
+        List<String> a = new ArrayList<>();
+        try (PathIndex.Reader reader = new PathIndex.Reader(file)) {
+            reader.skipUnaccepted(new TrigramIndex.Filter(new BitSet[0], names));
+            PathIndex.Refresher refresher = new PathIndex.Refresher(root, reader, options(Integer.MAX_VALUE));
+            for (PathIndex.Record r; (r = refresher.next()) != null;)
+                a.add(r.relativePath.replace('\\', '/') + ":" + r.ordinal);
+        }
+        assertEquals("[:0, a:1, a/b:2, a/d.txt:4, e:5, e/f.txt:-1, e/g.txt:-1]", a.toString());
+    }
+
+    private static TraversalOptions options(int maxDepth) {
+        return new TraversalOptions(maxDepth, false, Optional.empty());
+    }
+
+    private static String read(Path root, Path file, int maxDepth) throws IOException {
+        List<String> a = new ArrayList<>();
+        try (PathIndex.Reader reader = new PathIndex.Reader(file)) {
+            PathIndex.Refresher refresher = new PathIndex.Refresher(root, reader, options(maxDepth));
+            for (PathIndex.Record r; (r = refresher.next()) != null;)
+                a.add(root.relativize(r.toEntry(root).getPath()).toString().replace('\\', '/'));
+        }
+        return a.toString();
+    }
+
+    private static void touch(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.createFile(path);
+    }
+
+}
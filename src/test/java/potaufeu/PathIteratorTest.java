@@ -0,0 +1,142 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class PathIteratorTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testParallel() throws Exception {
+        Path root = tmpFolder.getRoot().toPath();
+        for (int i = 0; i < 8; i++)
+            for (int j = 0; j < 4; j++) {
+                Path dir = Files.createDirectories(root.resolve("d" + i).resolve("e" + j));
+                for (int k = 0; k < 5; k++)
+                    Files.createFile(dir.resolve("f" + k));
+            }
+        List<Path> expected = walk(root, false);
+        assertEquals(1 + 8 + 8 * 4 + 8 * 4 * 5, expected.size());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<Path> actual = pool.submit(() -> walk(root, true)).get();
+            assertEquals(new HashSet<>(expected), new HashSet<>(actual));
+            assertEquals(expected.size(), actual.size());
+            assertParentsFirst(actual);
+            assertEquals(actual, pool.submit(() -> walk(root, true)).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testTrySplit() throws IOException {
+        Path root = tmpFolder.getRoot().toPath();
+        for (int i = 0; i < 4; i++)
+            Files.createFile(Files.createDirectories(root.resolve("d" + i)).resolve("f"));
+        PathSpliterator suffix = spliterator(root);
+        assertEquals(Long.MAX_VALUE, suffix.estimateSize());
+        assertTrue(suffix.hasCharacteristics(Spliterator.ORDERED));
+        Spliterator<PathEntry> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        assertEquals(Long.MAX_VALUE, prefix.estimateSize());
+        List<Path> actual = new ArrayList<>();
+        prefix.forEachRemaining(x -> actual.add(x.getPath()));
+        suffix.forEachRemaining(x -> actual.add(x.getPath()));
+        assertEquals(new HashSet<>(walk(root, false)), new HashSet<>(actual));
+        assertEquals(1 + 4 + 4, actual.size());
+        assertParentsFirst(actual);
+    }
+
+    @Test
+    public void testTrySplitFlat() throws IOException {
+        Path root = tmpFolder.getRoot().toPath();
+        for (int i = 0; i < 2_000; i++)
+            Files.createFile(root.resolve("f" + i));
+        PathSpliterator suffix = spliterator(root);
+        Spliterator<PathEntry> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        // the root has been listed to split the buffered entries
+        assertEquals(1_000, prefix.estimateSize());
+        assertEquals(1_001, suffix.estimateSize());
+        List<Path> actual = new ArrayList<>();
+        prefix.forEachRemaining(x -> actual.add(x.getPath()));
+        suffix.forEachRemaining(x -> actual.add(x.getPath()));
+        assertEquals(walk(root, false), actual);
+    }
+
+    @Test
+    public void testOneFileSystem() throws IOException {
+        Path root = tmpFolder.getRoot().toPath();
+        Path shm = Paths.get("/dev/shm");
+        Assume.assumeTrue(Files.isDirectory(shm) && Files.isWritable(shm));
+        Path other = Files.createTempDirectory(shm, "potf");
+        try {
+            Assume.assumeTrue(new PathEntry(root).device() != new PathEntry(other).device());
+            Files.createFile(other.resolve("x"));
+            Files.createFile(Files.createDirectories(root.resolve("a")).resolve("y"));
+            Files.createSymbolicLink(root.resolve("link"), other);
+            for (Path path : Arrays.asList(root, other, root.resolve("link"))) {
+                assertEquals(Files.getAttribute(path, "unix:dev"), new PathEntry(path).device());
+                assertEquals(Files.getAttribute(path, "unix:ino"), new PathEntry(path).inode());
+            }
+            assertEquals(-1L, new PathEntry(root.resolve("missing")).device());
+            assertEquals(5, PathIterator.entries(root, options(false)).count());
+            List<Path> actual =
+                PathIterator.entries(root, options(true)).map(PathEntry::getPath).sorted().collect(Collectors.toList());
+            assertEquals(Arrays.asList(root, root.resolve("a"), root.resolve("a/y"), root.resolve("link")), actual);
+        } finally {
+            Files.deleteIfExists(other.resolve("x"));
+            Files.delete(other);
+        }
+    }
+
+    @Test
+    public void testDefaultRootDepth() throws IOException {
+        // the entries of the default root are at depth 0, as their paths have as many names as the root
+        final Path root = Paths.get("");
+        for (int maxDepth = 0; maxDepth <= 1; maxDepth++) {
+            final Set<Path> expected;
+            try (Stream<Path> paths = Files.walk(root, maxDepth + 1)) {
+                expected = paths.collect(Collectors.toSet());
+            }
+            TraversalOptions options = new TraversalOptions(maxDepth, true, Optional.empty()).followLinks(false);
+            List<Path> actual = PathIterator.entries(root, options).map(PathEntry::getPath).collect(Collectors.toList());
+            assertEquals(expected, new HashSet<>(actual));
+            assertEquals(expected.size(), actual.size());
+        }
+    }
+
+    private static TraversalOptions options(boolean oneFileSystem) {
+        return new TraversalOptions(Integer.MAX_VALUE, false, Optional.empty()).oneFileSystem(oneFileSystem);
+    }
+
+    private static List<Path> walk(Path root, boolean parallel) {
+        TraversalOptions options = new TraversalOptions(Integer.MAX_VALUE, false, Optional.empty()).parallel(parallel);
+        List<Path> a = new ArrayList<>();
+        PathIterator.entries(root, options).forEachOrdered(x -> a.add(x.getPath()));
+        return a;
+    }
+
+    private static PathSpliterator spliterator(Path root) {
+        return new PathSpliterator(new PathIterator(root, Integer.MAX_VALUE, false));
+    }
+
+    private static void assertParentsFirst(List<Path> paths) {
+        Set<Path> seen = new HashSet<>();
+        for (Path path : paths) {
+            if (seen.size() > 0)
+                assertTrue(path.toString(), seen.contains(path.getParent()));
+            seen.add(path);
+        }
+    }
+
+}
@@ -51,6 +51,20 @@ public final class PathMatcherFactoryTest {
         assertTrue(f2.matches(path2));
     }
 
+    @Test
+    public void testMayMatchBelow() throws Exception {
+        Parser parser = new Parser();
+        EntryMatcher f = (EntryMatcher) createMatcherByPath(parser.parse("(?)^/usr/")).get();
+        Path root = Paths.get("/");
+        assertTrue(f.mayMatchBelow(root));
+        assertTrue(f.mayMatchBelow(root.resolve("usr")));
+        assertFalse(f.mayMatchBelow(root.resolve("etc")));
+        EntryMatcher g = (EntryMatcher) createMatcherByPath(parser.parse("(?)^a/b")).get();
+        assertTrue(g.mayMatchBelow(Paths.get("")));
+        assertTrue(g.mayMatchBelow(Paths.get("a")));
+        assertFalse(g.mayMatchBelow(Paths.get("c")));
+    }
+
     @Test
     public void testCreateMatcherByName() throws Exception {
         Parser parser = new Parser();
@@ -136,6 +150,24 @@ public final class PathMatcherFactoryTest {
         assertFalse(f.matches(path2));
     }
 
+    @Test
+    public void testCreateMatcherByNameAndExtension() throws Exception {
+        Parser parser = new Parser();
+        assertFalse(createMatcherByNameAndExtension(parser.parse()).isPresent());
+        PathMatcher f1 = createMatcherByNameAndExtension(parser.parse("-n", "test", ".TXT,gz,t.r")).get();
+        assertTrue(f1.matches(path1));
+        assertFalse(f1.matches(path2));
+        assertTrue(f1.matches(Paths.get("a", "test.tar.gz")));
+        assertTrue(f1.matches(Paths.get("test.tXr")));
+        assertFalse(f1.matches(Paths.get("test.t")));
+        assertFalse(f1.matches(Paths.get("atxt")));
+        assertFalse(f1.matches(Paths.get("a.txt")));
+        PathMatcher f2 = createMatcherByNameAndExtension(parser.parse("-n", "(?)^\\.", ".rc")).get();
+        assertTrue(f2.matches(Paths.get(".rc")));
+        assertTrue(f2.matches(Paths.get(".bashrc.rc")));
+        assertFalse(f2.matches(Paths.get("a.rc")));
+    }
+
     @SuppressWarnings("deprecation")
     @Test
     public void testPathMatchers() throws Exception {
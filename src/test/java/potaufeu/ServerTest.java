@@ -0,0 +1,94 @@
+package potaufeu;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class ServerTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testRequest() throws Exception {
+        Path file = tmpFolder.getRoot().toPath().resolve("server");
+        assertFalse(Launcher.request(file, new String[] { "--version" }, null, null));
+        Server server = new Server(file);
+        server.start();
+        Thread th = new Thread(server);
+        th.start();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertTrue(Launcher.request(file, new String[] { "--version" }, out, err));
+            assertEquals(App.version() + System.lineSeparator(), out.toString());
+            assertEquals(0, err.size());
+            // run by the client
+            assertFalse(Launcher.request(file, new String[] { "-i" }, out, err));
+            // invalid token
+            List<String> lines = Files.readAllLines(file, UTF_8);
+            Path file2 = tmpFolder.getRoot().toPath().resolve("server2");
+            Files.write(file2, Arrays.asList(lines.get(0), "x"), UTF_8);
+            try {
+                Launcher.request(file2, new String[] { "--version" }, out, err);
+                fail();
+            } catch (EOFException e) {
+                // closed
+            }
+        } finally {
+            server.close();
+            th.join();
+        }
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void testRequestBusy() throws Exception {
+        Path file = tmpFolder.getRoot().toPath().resolve("server");
+        Server server = new Server(file);
+        server.start();
+        Thread th = new Thread(server);
+        th.start();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            // running another command
+            server.running.set(true);
+            final long start = System.currentTimeMillis();
+            assertFalse(Launcher.request(file, new String[] { "--version" }, out, out));
+            assertTrue(System.currentTimeMillis() - start < Launcher.READY_TIMEOUT);
+            assertEquals(0, out.size());
+            server.running.set(false);
+            assertTrue(Launcher.request(file, new String[] { "--version" }, out, out));
+            assertEquals(App.version() + System.lineSeparator(), out.toString());
+        } finally {
+            server.close();
+            th.join();
+        }
+    }
+
+    @Test
+    public void testRequestNotResponding() throws Exception {
+        Path file = tmpFolder.getRoot().toPath().resolve("server");
+        // a server which does not accept the connection
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            Files.write(file, Arrays.asList(String.valueOf(serverSocket.getLocalPort()), "x"), UTF_8);
+            final long start = System.currentTimeMillis();
+            assertFalse(Launcher.request(file, new String[] { "--version" }, null, null));
+            assertTrue(System.currentTimeMillis() - start >= Launcher.READY_TIMEOUT);
+        }
+    }
+
+    @Test
+    public void testRunsLocally() {
+        for (String arg : Arrays.asList("-i", "--interactive", "--daemon", "--server"))
+            assertTrue(arg, Launcher.runsLocally(new String[] { "-d", "x", arg }));
+        assertNotEquals(Launcher.serverFileName("/a", "UTF-8"), Launcher.serverFileName("/b", "UTF-8"));
+        assertNotEquals(Launcher.serverFileName("/a", "UTF-8"), Launcher.serverFileName("/a", "EUC-JP"));
+    }
+
+}
@@ -70,4 +70,45 @@ public final class StringMatchingPredicateTest {
         assertFalse(f2.matches("ARMor"));
     }
 
+    @Test
+    public void testLiterals() {
+        StringMatchingPredicate f1 = create("she", "he", "hers", "(?i)HIS");
+        assertTrue(f1.matches("ushers his"));
+        assertTrue(f1.matches("ushers hIs"));
+        assertFalse(f1.matches("usHErs his"));
+        assertFalse(f1.matches("ushers hi"));
+        StringMatchingPredicate f2 = any(Arrays.asList("(?i)\u3042b", "(?)cd", "xyz"));
+        assertTrue(f2.matches("\u3042B"));
+        assertTrue(f2.matches("acde"));
+        assertTrue(f2.matches("wxyz"));
+        assertFalse(f2.matches("\u3041b"));
+        assertFalse(f2.matches("xy cD"));
+        StringMatchingPredicate f3 = create("(?i)potAufeu");
+        assertTrue(f3.matches("-- POTAUFEU --"));
+        assertTrue(f3.matches("potaufeu"));
+        assertFalse(f3.matches("potaufe"));
+        assertFalse(f3.matches("POTAUFEU\u212a".substring(1)));
+        StringMatchingPredicate f4 = any(Arrays.asList("abc", "(?i)x.z", ""));
+        assertTrue(f4.matches("-"));
+        StringMatchingPredicate f5 = any(Arrays.asList("abc", "(?i)x.z"));
+        assertTrue(f5.matches("XyZ"));
+        assertFalse(f5.matches("ab"));
+    }
+
+    @Test
+    public void testMayMatchPrefix() {
+        StringMatchingPredicate f1 = create("(?)^src/main/.+\\.java$");
+        StringMatchingPredicate f2 = create("(?)main");
+        StringMatchingPredicate f3 = create("(?)^src/a|^src/b");
+        assertTrue(f1.mayMatchPrefix("src/"));
+        assertTrue(f1.mayMatchPrefix("src/main/java/"));
+        assertFalse(f1.mayMatchPrefix("src/test/"));
+        assertFalse(f1.mayMatchPrefix("lib/"));
+        assertTrue(f2.mayMatchPrefix("lib/"));
+        assertTrue(f3.mayMatchPrefix("lib/"));
+        assertTrue(create("aabb").mayMatchPrefix("lib/"));
+        assertFalse(and(f1, f2).mayMatchPrefix("lib/"));
+        assertTrue(or(f1, f2).mayMatchPrefix("lib/"));
+    }
+
 }
@@ -0,0 +1,88 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class TextSnifferTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testClassify() {
+        assertEquals(TextSniffer.Kind.TEXT, classify(true));
+        assertEquals(TextSniffer.Kind.TEXT, classify(true, 'a', '\t', 'b', '\r', '\n'));
+        assertEquals(TextSniffer.Kind.TEXT, classify(true, 0xE3, 0x81, 0x82, 0xF0, 0x9F, 0x8D, 0xB2));
+        assertEquals(TextSniffer.Kind.BINARY, classify(true, 'a', 'b', 0, 'c'));
+        assertEquals(TextSniffer.Kind.BINARY, classify(true, 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 1, 2));
+        assertEquals(TextSniffer.Kind.TEXT, classify(true, 'a', 'b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 2));
+        // Shift_JIS, an overlong form, a surrogate
+        assertEquals(TextSniffer.Kind.NON_UTF8, classify(true, 0x82, 0xA0));
+        assertEquals(TextSniffer.Kind.NON_UTF8, classify(true, 0xC0, 0xAF));
+        assertEquals(TextSniffer.Kind.NON_UTF8, classify(true, 0xED, 0xA0, 0x80));
+        // cut at the end
+        assertEquals(TextSniffer.Kind.NON_UTF8, classify(true, 'a', 0xE3, 0x81));
+        assertEquals(TextSniffer.Kind.TEXT, classify(false, 'a', 0xE3, 0x81));
+    }
+
+    @Test
+    public void testContentKind() throws IOException {
+        Path file = tmpFolder.newFile("a.bin").toPath();
+        byte[] bytes = new byte[TextSniffer.BLOCK_SIZE + 1];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = 'a';
+        bytes[TextSniffer.BLOCK_SIZE] = 0;
+        Files.write(file, bytes);
+        // the NUL is out of the block
+        assertEquals(TextSniffer.Kind.TEXT, new PathEntry(file).contentKind());
+        assertEquals(TextSniffer.Kind.UNKNOWN, new PathEntry(tmpFolder.getRoot().toPath()).contentKind());
+    }
+
+    @Test
+    public void testContentType() throws IOException {
+        assertEquals(ContentType.IMAGE, detect(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0));
+        assertEquals(ContentType.IMAGE, detect('R', 'I', 'F', 'F', 1, 2, 3, 4, 'W', 'E', 'B', 'P'));
+        assertNull(detect('R', 'I', 'F', 'F', 1, 2, 3, 4, 'W', 'A', 'V', 'E'));
+        assertEquals(ContentType.ELF, detect(0x7F, 'E', 'L', 'F', 2));
+        assertEquals(ContentType.PDF, detect('%', 'P', 'D', 'F', '-', '1'));
+        assertNull(detect('%', 'P', 'D', 'F'));
+        byte[] tar = new byte[512];
+        System.arraycopy("ustar".getBytes(), 0, tar, 257, 5);
+        Path file = tmpFolder.newFile("a.tar").toPath();
+        Files.write(file, tar);
+        PathEntry entry = new PathEntry(file);
+        assertEquals(ContentType.ARCHIVE, entry.contentType());
+        assertEquals(TextSniffer.Kind.BINARY, entry.contentKind());
+        assertEquals("[IMAGE, PDF]", ContentType.parse(Arrays.asList("pdf,Image")).toString());
+        try {
+            ContentType.parse(Arrays.asList("exe"));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // unknown
+        }
+    }
+
+    private static ContentType detect(int... a) {
+        ByteBuffer buffer = ByteBuffer.allocate(a.length);
+        for (int b : a)
+            buffer.put((byte) b);
+        buffer.flip();
+        return ContentType.detect(buffer);
+    }
+
+    private static TextSniffer.Kind classify(boolean whole, int... a) {
+        ByteBuffer buffer = ByteBuffer.allocate(a.length + 1);
+        buffer.put((byte) 'x'); // before the position
+        for (int b : a)
+            buffer.put((byte) b);
+        buffer.flip();
+        buffer.position(1);
+        return TextSniffer.classify(buffer, whole);
+    }
+
+}
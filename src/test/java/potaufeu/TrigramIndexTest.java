@@ -0,0 +1,52 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class TrigramIndexTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testCandidates() throws IOException {
+        Path file = tmpFolder.newFile("index.tri").toPath();
+        TrigramIndex.Builder builder = new TrigramIndex.Builder();
+        for (String name : new String[] { "", "src", "main", "Alpha.java", "test", "AlphaTest.java", "alp" })
+            builder.add(name);
+        try (OutputStream os = Files.newOutputStream(file)) {
+            builder.write(os, 1L);
+        }
+        assertFalse(TrigramIndex.open(file, 2L).isPresent());
+        TrigramIndex index = TrigramIndex.open(file, 1L).get();
+        assertEquals("{3, 5}", index.candidates("Alpha").toString());
+        assertEquals("{3, 5}", index.candidates(".java").toString());
+        assertEquals("{}", index.candidates("Beta").toString());
+        assertNull(index.candidates("al"));
+    }
+
+    @Test
+    public void testFilter() {
+        BitSet main = new BitSet();
+        main.set(2);
+        TrigramIndex.Filter filter = new TrigramIndex.Filter(new BitSet[] { main }, null);
+        // the candidates of path substrings include their subtrees
+        assertTrue(filter.accepts(record("", 0, 0)));
+        assertFalse(filter.accepts(record("src", 1, 1)));
+        assertTrue(filter.accepts(record("src/main", 2, 2)));
+        assertTrue(filter.accepts(record("src/main/A", 3, 3)));
+        assertFalse(filter.accepts(record("src/test", 2, 4)));
+        assertTrue(filter.accepts(record("src/new", 2, -1)));
+        assertTrue(filter.accepts(record("src/new/B", 3, 5)));
+    }
+
+    private static PathIndex.Record record(String relativePath, int depth, int ordinal) {
+        return new PathIndex.Record(relativePath.replace('/', File.separatorChar), depth, (byte) 1, 0L, 0L, null,
+            ordinal);
+    }
+
+}
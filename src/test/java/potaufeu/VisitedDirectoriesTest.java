@@ -0,0 +1,41 @@
+package potaufeu;
+
+import static org.junit.Assert.*;
+import java.nio.file.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+public final class VisitedDirectoriesTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    @Test
+    public void testAdd() throws Exception {
+        Path a = tmpFolder.newFolder("a").toPath();
+        Path b = tmpFolder.newFolder("b").toPath();
+        Path link = Files.createSymbolicLink(tmpFolder.getRoot().toPath().resolve("link"), a);
+        VisitedDirectories o = new VisitedDirectories();
+        assertTrue(o.add(new PathEntry(a)));
+        assertFalse(o.add(new PathEntry(a)));
+        // through the link
+        assertFalse(o.add(new PathEntry(link)));
+        assertTrue(o.add(new PathEntry(b)));
+        assertFalse(o.add(new PathEntry(b)));
+        // cannot be identified
+        assertTrue(o.add(new PathEntry(b.resolve("x"))));
+        assertTrue(o.add(new PathEntry(b.resolve("x"))));
+    }
+
+    @Test
+    public void testAddNumbers() {
+        VisitedDirectories o = new VisitedDirectories();
+        // grows the table
+        for (long i = 0; i < 5000; i++)
+            assertTrue(o.add(i % 3, i));
+        for (long i = 0; i < 5000; i++)
+            assertFalse(o.add(i % 3, i));
+        assertTrue(o.add(1L, 0L));
+    }
+
+}